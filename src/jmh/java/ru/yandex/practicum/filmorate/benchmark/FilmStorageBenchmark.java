@@ -0,0 +1,88 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.SearchField;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Горячие пути чтения фильмов: H2 через FilmDbStorage, кэш CachingFilmStorage и хранилище в памяти
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class FilmStorageBenchmark {
+
+    @Benchmark
+    public List<Film> findAll(StorageState state) {
+        return state.filmDbStorage.findAll();
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms(StorageState state) {
+        return state.filmDbStorage.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilmsByGenreAndYear(StorageState state) {
+        return state.filmDbStorage.getPopularFilms(10, 1, 1990);
+    }
+
+    @Benchmark
+    public List<Film> search(StorageState state) {
+        return state.filmDbStorage.search("film 99", EnumSet.allOf(SearchField.class), 10);
+    }
+
+    // Слово есть в описании каждого фильма: кандидаты — весь каталог
+    @Benchmark
+    public List<Film> searchCommonWord(StorageState state) {
+        return state.filmDbStorage.search("film", EnumSet.allOf(SearchField.class), 10);
+    }
+
+    // Префикс из одной буквы и из одной цифры: объединение списков многих слов словаря
+    @Benchmark
+    public List<Film> searchSingleLetterPrefix(StorageState state) {
+        return state.filmDbStorage.search("f", EnumSet.allOf(SearchField.class), 10);
+    }
+
+    @Benchmark
+    public List<Film> searchSingleDigitPrefix(StorageState state) {
+        return state.filmDbStorage.search("1", EnumSet.allOf(SearchField.class), 10);
+    }
+
+    @Benchmark
+    public Optional<Film> findById(StorageState state) {
+        return state.filmDbStorage.findById(state.randomFilmId());
+    }
+
+    @Benchmark
+    public Optional<Film> cachedFindById(StorageState state) {
+        return state.cachingFilmStorage.findById(state.randomFilmId());
+    }
+
+    @Benchmark
+    public List<Film> getRecommendations(StorageState state) {
+        return state.filmDbStorage.getRecommendations(state.randomUserId(), 10);
+    }
+
+    @Benchmark
+    public List<Film> inMemoryFindAll(StorageState state) {
+        return state.inMemoryFilmStorage.findAll();
+    }
+
+    @Benchmark
+    public List<Film> inMemoryGetPopularFilms(StorageState state) {
+        return state.inMemoryFilmStorage.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public Optional<Film> inMemoryFindById(StorageState state) {
+        return state.inMemoryFilmStorage.findById(state.randomFilmId());
+    }
+}
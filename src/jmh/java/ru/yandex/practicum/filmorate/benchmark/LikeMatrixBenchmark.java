@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.yandex.practicum.filmorate.storage.film.LikeMatrix;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Лайк и отмена лайка фильма, у которого уже likerCount лайков. Лайкнувшие — чётные id,
+// поэтому случайный нечётный пользователь всегда добавляется в середину списка, а не в конец
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LikeMatrixBenchmark {
+    private static final long HOT_FILM_ID = 1;
+
+    @Param({"1000", "100000", "500000"})
+    public int likerCount;
+
+    private LikeMatrix likeMatrix;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long[] likers = new long[likerCount];
+        for (int i = 0; i < likerCount; i++) {
+            likers[i] = 2L * (i + 1);
+        }
+        likeMatrix = new LikeMatrix();
+        likeMatrix.putFilm(HOT_FILM_ID, likers);
+    }
+
+    @Benchmark
+    public boolean likeAndUnlikeHotFilm() {
+        long userId = 2L * ThreadLocalRandom.current().nextInt(likerCount) + 1;
+        likeMatrix.add(HOT_FILM_ID, userId);
+        return likeMatrix.remove(HOT_FILM_ID, userId);
+    }
+}
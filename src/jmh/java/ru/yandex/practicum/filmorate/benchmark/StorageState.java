@@ -0,0 +1,229 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.dao.MpaDao;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Общие данные бенчмарков: контекст приложения поверх отдельной H2 в памяти и хранилища в памяти,
+// заполненные одинаковым детерминированным набором фильмов, пользователей, лайков и дружб.
+// sparse — пара лайков и несколько друзей на пользователя, dense — десятки лайков и сотня друзей
+@State(Scope.Benchmark)
+public class StorageState {
+    private static final int INSERT_BATCH_SIZE = 10_000;
+    private static final int GENRE_COUNT = 6;
+    private static final int MPA_COUNT = 5;
+
+    @Param({"1000", "100000", "1000000"})
+    public int filmCount;
+
+    @Param({"sparse", "dense"})
+    public String graph;
+
+    public FilmDbStorage filmDbStorage;
+    public CachingFilmStorage cachingFilmStorage;
+    public UserDbStorage userDbStorage;
+    public InMemoryFilmStorage inMemoryFilmStorage;
+    public InMemoryUserStorage inMemoryUserStorage;
+
+    private ConfigurableApplicationContext context;
+    private int userCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // Аргументы командной строки переопределяют application.properties, в отличие от properties()
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";LOCK_TIMEOUT=10000",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.springframework.jdbc.core=WARN",
+                        "--logging.level.org.zalando.logbook=WARN");
+        filmDbStorage = context.getBean(FilmDbStorage.class);
+        cachingFilmStorage = context.getBean(CachingFilmStorage.class);
+        userDbStorage = context.getBean(UserDbStorage.class);
+
+        boolean dense = "dense".equals(graph);
+        userCount = Math.max(1000, filmCount / 10);
+        int likesPerUser = Math.min(filmCount, dense ? 50 : 2);
+        int friendsPerUser = Math.min(userCount - 1, dense ? 100 : 5);
+
+        Random random = new Random(42);
+        int[][] likes = pickDistinct(random, userCount, likesPerUser, filmCount, true);
+        int[][] friends = pickDistinct(random, userCount, friendsPerUser, userCount, false);
+
+        seedDatabase(context.getBean(JdbcTemplate.class), likes, friends);
+        filmDbStorage.init();
+        userDbStorage.initFriendIndex();
+
+        inMemoryUserStorage = new InMemoryUserStorage();
+        inMemoryFilmStorage = new InMemoryFilmStorage(inMemoryUserStorage, context.getBean(MpaDao.class));
+        seedInMemory(likes, friends);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public long randomFilmId() {
+        return ThreadLocalRandom.current().nextLong(1, filmCount + 1);
+    }
+
+    public long randomUserId() {
+        return ThreadLocalRandom.current().nextLong(1, userCount + 1);
+    }
+
+    // Для каждого пользователя выбирает count различных id из 1..bound.
+    // Лайки смещены к фильмам с малыми id, чтобы рейтинг был неравномерным, как в жизни
+    private static int[][] pickDistinct(Random random, int users, int count, int bound, boolean skewed) {
+        int[][] result = new int[users][];
+        for (int user = 0; user < users; user++) {
+            Set<Integer> picked = new HashSet<>();
+            while (picked.size() < count) {
+                double point = skewed ? Math.pow(random.nextDouble(), 3) : random.nextDouble();
+                int id = 1 + (int) (point * bound);
+                if (skewed || id != user + 1) {
+                    picked.add(id);
+                }
+            }
+            result[user] = picked.stream().mapToInt(Integer::intValue).sorted().toArray();
+        }
+        return result;
+    }
+
+    private void seedDatabase(JdbcTemplate jdbcTemplate, int[][] likes, int[][] friends) {
+        long[] likesCount = new long[filmCount + 1];
+        for (int[] userLikes : likes) {
+            for (int filmId : userLikes) {
+                likesCount[filmId]++;
+            }
+        }
+
+        insertBatched(jdbcTemplate, "INSERT INTO users (id, email, login, name) VALUES (?, ?, ?, ?)",
+                userCount, (ps, i) -> {
+                    ps.setLong(1, i + 1);
+                    ps.setString(2, "user" + (i + 1) + "@example.com");
+                    ps.setString(3, "user" + (i + 1));
+                    ps.setString(4, "User " + (i + 1));
+                });
+        insertBatched(jdbcTemplate, "INSERT INTO films (id, name, description, release_date, duration, mpa_id, "
+                        + "likes_count) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                filmCount, (ps, i) -> {
+                    ps.setLong(1, i + 1);
+                    ps.setString(2, "Film " + (i + 1));
+                    ps.setString(3, "Description of film " + (i + 1));
+                    ps.setObject(4, LocalDate.of(1950 + i % 70, 1 + i % 12, 1));
+                    ps.setInt(5, 60 + i % 120);
+                    ps.setInt(6, 1 + i % MPA_COUNT);
+                    ps.setLong(7, likesCount[i + 1]);
+                });
+        insertBatched(jdbcTemplate, "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)",
+                filmCount, (ps, i) -> {
+                    ps.setLong(1, i + 1);
+                    ps.setInt(2, 1 + i % GENRE_COUNT);
+                });
+        insertPairs(jdbcTemplate, "INSERT INTO likes (user_id, film_id) VALUES (?, ?)", likes);
+        insertPairs(jdbcTemplate, "INSERT INTO friends (user_id, friend_id) VALUES (?, ?)", friends);
+    }
+
+    private void seedInMemory(int[][] likes, int[][] friends) {
+        for (int i = 0; i < userCount; i++) {
+            User user = new User();
+            user.setEmail("user" + (i + 1) + "@example.com");
+            user.setLogin("user" + (i + 1));
+            user.setName("User " + (i + 1));
+            inMemoryUserStorage.create(user);
+        }
+        for (int i = 0; i < filmCount; i++) {
+            Film film = new Film();
+            film.setName("Film " + (i + 1));
+            film.setDescription("Description of film " + (i + 1));
+            film.setReleaseDate(LocalDate.of(1950 + i % 70, 1 + i % 12, 1));
+            film.setDuration(60 + i % 120);
+            Mpa mpa = new Mpa();
+            mpa.setId(1 + i % MPA_COUNT);
+            film.setMpa(mpa);
+            film.getGenres().add(1 + i % GENRE_COUNT);
+            inMemoryFilmStorage.create(film);
+        }
+        for (int user = 0; user < likes.length; user++) {
+            for (int filmId : likes[user]) {
+                inMemoryFilmStorage.addLike(filmId, user + 1);
+            }
+        }
+        for (int user = 0; user < friends.length; user++) {
+            for (int friendId : friends[user]) {
+                inMemoryUserStorage.addFriend(user + 1, friendId);
+            }
+        }
+    }
+
+    private static void insertPairs(JdbcTemplate jdbcTemplate, String sql, int[][] pairsByUser) {
+        int total = Arrays.stream(pairsByUser).mapToInt(ids -> ids.length).sum();
+        int[] users = new int[total];
+        int[] targets = new int[total];
+        int position = 0;
+        for (int user = 0; user < pairsByUser.length; user++) {
+            for (int target : pairsByUser[user]) {
+                users[position] = user + 1;
+                targets[position++] = target;
+            }
+        }
+
+        insertBatched(jdbcTemplate, sql, total, (ps, i) -> {
+            ps.setInt(1, users[i]);
+            ps.setInt(2, targets[i]);
+        });
+    }
+
+    // Вставляет rows строк пачками, не собирая все параметры в памяти
+    private static void insertBatched(JdbcTemplate jdbcTemplate, String sql, int rows, RowSetter setter) {
+        for (int from = 0; from < rows; from += INSERT_BATCH_SIZE) {
+            int offset = from;
+            int size = Math.min(INSERT_BATCH_SIZE, rows - from);
+            jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setter.set(ps, offset + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowSetter {
+        void set(PreparedStatement ps, int row) throws SQLException;
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Общие друзья случайной пары пользователей: индекс друзей с догрузкой из H2 и хранилище в памяти
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class UserStorageBenchmark {
+
+    @Benchmark
+    public List<User> getCommonFriends(StorageState state) {
+        return state.userDbStorage.getCommonFriends(state.randomUserId(), state.randomUserId());
+    }
+
+    @Benchmark
+    public List<User> inMemoryGetCommonFriends(StorageState state) {
+        return state.inMemoryUserStorage.getCommonFriends(state.randomUserId(), state.randomUserId());
+    }
+}
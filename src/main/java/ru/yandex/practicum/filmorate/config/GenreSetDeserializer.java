@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import org.springframework.boot.jackson.JsonComponent;
+import ru.yandex.practicum.filmorate.model.GenreSet;
+
+import java.io.IOException;
+
+// Читает жанры из массива объектов [{"id": 1}, ...]. Берётся только id, название игнорируется.
+// Объект без целочисленного id — ошибка формата запроса, а не жанр с id 0
+@JsonComponent
+public class GenreSetDeserializer extends JsonDeserializer<GenreSet> {
+
+    @Override
+    public GenreSet deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartArrayToken()) {
+            return (GenreSet) context.handleUnexpectedToken(GenreSet.class, parser);
+        }
+
+        GenreSet genres = new GenreSet();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                return (GenreSet) context.handleUnexpectedToken(GenreSet.class, parser);
+            }
+
+            Integer id = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"id".equals(field)) {
+                    parser.skipChildren();
+                } else if (value == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT) {
+                    id = parser.getIntValue();
+                } else {
+                    return (GenreSet) context.handleUnexpectedToken(GenreSet.class, parser);
+                }
+            }
+            if (id == null) {
+                return context.reportInputMismatch(GenreSet.class, "У жанра должен быть целочисленный id");
+            }
+            genres.add(id);
+        }
+        return genres;
+    }
+
+    // "genres": null означает фильм без жанров
+    @Override
+    public GenreSet getNullValue(DeserializationContext context) {
+        return new GenreSet();
+    }
+}
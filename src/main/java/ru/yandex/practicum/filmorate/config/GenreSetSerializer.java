@@ -0,0 +1,32 @@
+package ru.yandex.practicum.filmorate.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.jackson.JsonComponent;
+import ru.yandex.practicum.filmorate.dao.GenreDao;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.GenreSet;
+
+import java.io.IOException;
+
+// Пишет набор жанров в прежнем формате [{"id": 1, "name": "Комедия"}, ...],
+// названия берутся из закэшированного справочника жанров
+@JsonComponent
+@RequiredArgsConstructor
+public class GenreSetSerializer extends JsonSerializer<GenreSet> {
+    private final GenreDao genreDao;
+
+    @Override
+    public void serialize(GenreSet genres, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartArray(genres, genres.size());
+        for (int id : genres.ids()) {
+            gen.writeStartObject();
+            gen.writeNumberField("id", id);
+            gen.writeStringField("name", genreDao.findById(id).map(Genre::getName).orElse(null));
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+}
@@ -1,10 +1,12 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 
 import java.time.Instant;
@@ -23,6 +25,17 @@ public class ErrorHandler {
         );
     }
 
+    // Тело запроса не разобралось: неверный JSON или поле неподходящего типа
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleHttpMessageNotReadableException(final HttpMessageNotReadableException e) {
+        return Map.of(
+                "error", "Некорректное тело запроса",
+                "message", e.getMostSpecificCause().getMessage(),
+                "timestamp", Instant.now().toString()
+        );
+    }
+
     @ExceptionHandler(NotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Map<String, String> handleNotFoundException(final NotFoundException e) {
@@ -33,6 +46,16 @@ public class ErrorHandler {
         );
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleServiceUnavailableException(final ServiceUnavailableException e) {
+        return Map.of(
+                "error", "Сервис перегружен",
+                "message", e.getMessage(),
+                "timestamp", Instant.now().toString()
+        );
+    }
+
     @ExceptionHandler(Throwable.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, String> handleThrowable(final Throwable e) {
@@ -1,11 +1,18 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @Slf4j
@@ -13,12 +20,49 @@ import java.util.List;
 @RequestMapping("/films")
 @RequiredArgsConstructor
 public class FilmController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public List<Film> getAllFilms() {
-        log.info("GET /films - получение всех фильмов");
-        return filmService.getAllFilms();
+    public ResponseEntity<List<Film>> getAllFilms(@RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("GET /films - получение всех фильмов");
+            return ResponseEntity.ok(filmService.getAllFilms());
+        }
+
+        log.info("GET /films?after={}&limit={} - получение страницы фильмов", after, limit);
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        List<Film> films = filmService.getFilmsPage(after != null ? after : 0, pageSize);
+
+        // Курсор следующей страницы отдаём, только если текущая заполнена целиком
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (films.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(films.get(films.size() - 1).getId()));
+        }
+        return response.body(films);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        log.info("GET /films/export - потоковая выгрузка всех фильмов");
+        ObjectWriter writer = objectMapper.writerFor(Film.class);
+
+        // Каждый фильм пишется в ответ отдельной строкой сразу после загрузки
+        StreamingResponseBody body = outputStream -> filmService.exportFilms(film -> {
+            try {
+                outputStream.write(writer.writeValueAsBytes(film));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     @GetMapping("/{id}")
@@ -33,6 +77,12 @@ public class FilmController {
         return filmService.createFilm(film);
     }
 
+    @PostMapping("/batch")
+    public List<Film> createFilms(@RequestBody List<Film> films) {
+        log.info("POST /films/batch - создание {} фильмов", films.size());
+        return filmService.createFilms(films);
+    }
+
     @PutMapping
     public Film updateFilm(@RequestBody Film film) {
         log.info("PUT /films - обновление фильма: {}", film);
@@ -51,9 +101,34 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    // Фильм отдаёт только число лайков, а id лайкнувших пользователей читаются отсюда постранично
+    @GetMapping("/{id}/likes")
+    public ResponseEntity<long[]> getFilmLikes(@PathVariable Long id,
+                                               @RequestParam(defaultValue = "0") long after,
+                                               @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit) {
+        log.info("GET /films/{}/likes?after={}&limit={} - получение страницы лайков", id, after, limit);
+        long[] userIds = filmService.getFilmLikes(id, after, limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (userIds.length == limit) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(userIds[userIds.length - 1]));
+        }
+        return response.body(userIds);
+    }
+
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam(required = false) String query,
+                                  @RequestParam(defaultValue = "title") List<String> by,
+                                  @RequestParam(defaultValue = "10") int count) {
+        log.info("GET /films/search?query={}&by={}&count={} - поиск фильмов", query, by, count);
+        return filmService.searchFilms(query, by, count);
+    }
+
     @GetMapping("/popular")
-    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count) {
-        log.info("GET /films/popular?count={} - получение популярных фильмов", count);
-        return filmService.getPopularFilms(count);
+    public List<Film> getPopularFilms(@RequestParam(defaultValue = "10") int count,
+                                      @RequestParam(required = false) Integer genreId,
+                                      @RequestParam(required = false) Integer year) {
+        log.info("GET /films/popular?count={}&genreId={}&year={} - получение популярных фильмов", count, genreId, year);
+        return filmService.getPopularFilms(count, genreId, year);
     }
 }
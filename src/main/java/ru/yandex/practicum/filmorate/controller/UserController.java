@@ -2,7 +2,9 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
@@ -13,12 +15,29 @@ import java.util.List;
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final UserService userService;
 
     @GetMapping
-    public List<User> getAllUsers() {
-        log.info("GET /users - получение всех пользователей");
-        return userService.getAllUsers();
+    public ResponseEntity<List<User>> getAllUsers(@RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            log.info("GET /users - получение всех пользователей");
+            return ResponseEntity.ok(userService.getAllUsers());
+        }
+
+        log.info("GET /users?after={}&limit={} - получение страницы пользователей", after, limit);
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        List<User> users = userService.getUsersPage(after != null ? after : 0, pageSize);
+
+        // Курсор следующей страницы отдаём, только если текущая заполнена целиком
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (users.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(users.get(users.size() - 1).getId()));
+        }
+        return response.body(users);
     }
 
     @GetMapping("/{id}")
@@ -62,4 +81,10 @@ public class UserController {
         log.info("GET /users/{}/friends/common/{} - получение общих друзей", id, otherId);
         return userService.getCommonFriends(id, otherId);
     }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> getRecommendations(@PathVariable Long id, @RequestParam(defaultValue = "10") int count) {
+        log.info("GET /users/{}/recommendations?count={} - получение рекомендаций", id, count);
+        return userService.getRecommendations(id, count);
+    }
 }
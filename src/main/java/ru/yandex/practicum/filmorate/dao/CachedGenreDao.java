@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.List;
+import java.util.Optional;
+
+// Справочник жанров почти не меняется, поэтому держим его целиком в памяти,
+// индексируя массив по id жанра
+@Slf4j
+@Primary
+@Repository
+@RequiredArgsConstructor
+public class CachedGenreDao implements GenreDao {
+    private final GenreDaoImpl genreDaoImpl;
+
+    private volatile DirectorySnapshot<Genre> snapshot = DirectorySnapshot.empty();
+
+    @PostConstruct
+    public void refresh() {
+        snapshot = DirectorySnapshot.of(genreDaoImpl.findAll(), Genre::getId);
+        log.info("Справочник жанров загружен в кэш: {} записей", snapshot.size());
+    }
+
+    @Override
+    public List<Genre> findAll() {
+        return snapshot.all();
+    }
+
+    @Override
+    public Optional<Genre> findById(int id) {
+        return snapshot.findById(id);
+    }
+
+    @Override
+    public boolean existsById(int id) {
+        return findById(id).isPresent();
+    }
+}
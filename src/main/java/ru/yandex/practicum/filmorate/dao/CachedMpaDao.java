@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Mpa;
+
+import java.util.List;
+import java.util.Optional;
+
+// Справочник MPA почти не меняется, поэтому держим его целиком в памяти,
+// индексируя массив по id рейтинга
+@Slf4j
+@Primary
+@Repository
+@RequiredArgsConstructor
+public class CachedMpaDao implements MpaDao {
+    private final MpaDaoImpl mpaDaoImpl;
+
+    private volatile DirectorySnapshot<Mpa> snapshot = DirectorySnapshot.empty();
+
+    @PostConstruct
+    public void refresh() {
+        snapshot = DirectorySnapshot.of(mpaDaoImpl.findAll(), Mpa::getId);
+        log.info("Справочник MPA загружен в кэш: {} записей", snapshot.size());
+    }
+
+    @Override
+    public List<Mpa> findAll() {
+        return snapshot.all();
+    }
+
+    @Override
+    public Optional<Mpa> findById(int id) {
+        return snapshot.findById(id);
+    }
+
+    @Override
+    public boolean existsById(int id) {
+        return findById(id).isPresent();
+    }
+}
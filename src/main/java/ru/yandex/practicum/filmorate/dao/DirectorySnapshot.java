@@ -0,0 +1,50 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
+
+// Неизменяемый снимок справочника: все записи в порядке загрузки и массив, индексированный по id.
+// Id справочников маленькие и плотные, поэтому поиск по массиву дешевле хеш-таблицы
+final class DirectorySnapshot<T> {
+    private static final DirectorySnapshot<?> EMPTY = new DirectorySnapshot<>(new Object[0], List.of());
+
+    private final Object[] byId;
+    private final List<T> all;
+
+    private DirectorySnapshot(Object[] byId, List<T> all) {
+        this.byId = byId;
+        this.all = all;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> DirectorySnapshot<T> empty() {
+        return (DirectorySnapshot<T>) EMPTY;
+    }
+
+    static <T> DirectorySnapshot<T> of(List<T> all, ToIntFunction<T> idOf) {
+        int maxId = all.stream().mapToInt(idOf).max().orElse(0);
+
+        Object[] byId = new Object[maxId + 1];
+        for (T entry : all) {
+            byId[idOf.applyAsInt(entry)] = entry;
+        }
+        return new DirectorySnapshot<>(byId, List.copyOf(all));
+    }
+
+    List<T> all() {
+        return all;
+    }
+
+    @SuppressWarnings("unchecked")
+    Optional<T> findById(int id) {
+        if (id < 0 || id >= byId.length) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable((T) byId[id]);
+    }
+
+    int size() {
+        return all.size();
+    }
+}
@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.dao;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
@@ -10,6 +11,7 @@ import java.util.Optional;
 
 @Repository
 @RequiredArgsConstructor
+@Timed(value = "filmorate.dao", histogram = true, percentiles = {0.5, 0.95, 0.99})
 public class MpaDaoImpl implements MpaDao {
     private final JdbcTemplate jdbcTemplate;
     private final MpaMapper mpaMapper;
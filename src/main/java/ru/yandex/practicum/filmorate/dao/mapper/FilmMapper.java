@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.dao.mapper;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -9,9 +11,12 @@ import java.sql.SQLException;
 
 @Component
 public class FilmMapper implements RowMapper<Film> {
+    // Глобальный реестр: Spring Boot подключает к нему свой, а в тестовых срезах без метрик счётчик ничего не стоит
+    private final Counter rowsMapped = Metrics.counter("filmorate.jdbc.rows.mapped", "entity", "film");
 
     @Override
     public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
+        rowsMapped.increment();
         Film film = new Film();
         film.setId(rs.getLong("id"));
         film.setName(rs.getString("name"));
@@ -29,6 +34,8 @@ public class FilmMapper implements RowMapper<Film> {
         mpa.setId(rs.getInt("mpa_id"));
         film.setMpa(mpa);
 
+        film.setLikesCount(rs.getLong("likes_count"));
+
         return film;
     }
 }
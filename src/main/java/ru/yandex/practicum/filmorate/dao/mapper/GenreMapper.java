@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.dao.mapper;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Genre;
@@ -8,9 +10,11 @@ import java.sql.SQLException;
 
 @Component
 public class GenreMapper implements RowMapper<Genre> {
+    private final Counter rowsMapped = Metrics.counter("filmorate.jdbc.rows.mapped", "entity", "genre");
 
     @Override
     public Genre mapRow(ResultSet rs, int rowNum) throws SQLException {
+        rowsMapped.increment();
         Genre genre = new Genre();
         genre.setId(rs.getInt("id"));
         genre.setName(rs.getString("name"));
@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.dao.mapper;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Mpa;
@@ -8,9 +10,11 @@ import java.sql.SQLException;
 
 @Component
 public class MpaMapper implements RowMapper<Mpa> {
+    private final Counter rowsMapped = Metrics.counter("filmorate.jdbc.rows.mapped", "entity", "mpa");
 
     @Override
     public Mpa mapRow(ResultSet rs, int rowNum) throws SQLException {
+        rowsMapped.increment();
         Mpa mpa = new Mpa();
         mpa.setId(rs.getInt("id"));
         mpa.setName(rs.getString("name"));
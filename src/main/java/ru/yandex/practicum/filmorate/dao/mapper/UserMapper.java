@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.dao.mapper;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.User;
@@ -8,9 +10,11 @@ import java.sql.SQLException;
 
 @Component
 public class UserMapper implements RowMapper<User> {
+    private final Counter rowsMapped = Metrics.counter("filmorate.jdbc.rows.mapped", "entity", "user");
 
     @Override
     public User mapRow(ResultSet rs, int rowNum) throws SQLException {
+        rowsMapped.increment();
         User user = new User();
         user.setId(rs.getLong("id"));
         user.setEmail(rs.getString("email"));
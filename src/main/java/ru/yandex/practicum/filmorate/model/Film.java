@@ -1,11 +1,10 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.time.LocalDate;
-import java.util.HashSet;
-import java.util.Set;
 
 @Getter
 @Setter
@@ -18,6 +17,7 @@ public class Film {
     // Новое поле
     private Mpa mpa;
     // Изменено с likedUserIds
-    private Set<Genre> genres = new HashSet<>();
-    private Set<Long> likedUserIds = new HashSet<>();
+    private GenreSet genres = new GenreSet();
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long likesCount;
 }
@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Набор id жанров фильма. Жанров в справочнике единицы, поэтому id от 0 до 63 хранятся битами
+// одного long, а редкие id вне этого диапазона — в отсортированном массиве int.
+// Названия жанров здесь не хранятся: их подставляет сериализатор из справочника
+public final class GenreSet {
+    private static final int MASK_BITS = Long.SIZE;
+    private static final int[] EMPTY = new int[0];
+
+    private long mask;
+    private int[] extra = EMPTY;
+
+    public static GenreSet of(int... ids) {
+        GenreSet genres = new GenreSet();
+        for (int id : ids) {
+            genres.add(id);
+        }
+        return genres;
+    }
+
+    public void add(int id) {
+        if (inMask(id)) {
+            mask |= 1L << id;
+            return;
+        }
+
+        int position = Arrays.binarySearch(extra, id);
+        if (position < 0) {
+            int insertAt = -position - 1;
+            int[] updated = new int[extra.length + 1];
+            System.arraycopy(extra, 0, updated, 0, insertAt);
+            updated[insertAt] = id;
+            System.arraycopy(extra, insertAt, updated, insertAt + 1, extra.length - insertAt);
+            extra = updated;
+        }
+    }
+
+    public boolean contains(int id) {
+        if (inMask(id)) {
+            return (mask & 1L << id) != 0;
+        }
+        return Arrays.binarySearch(extra, id) >= 0;
+    }
+
+    public boolean isEmpty() {
+        return mask == 0 && extra.length == 0;
+    }
+
+    public int size() {
+        return Long.bitCount(mask) + extra.length;
+    }
+
+    // Обходит id по возрастанию
+    public void forEach(IntConsumer action) {
+        for (int id : extra) {
+            if (id < 0) {
+                action.accept(id);
+            }
+        }
+        for (long bits = mask; bits != 0; bits &= bits - 1) {
+            action.accept(Long.numberOfTrailingZeros(bits));
+        }
+        for (int id : extra) {
+            if (id >= MASK_BITS) {
+                action.accept(id);
+            }
+        }
+    }
+
+    public int[] ids() {
+        int[] ids = new int[size()];
+        int[] position = {0};
+        forEach(id -> ids[position[0]++] = id);
+        return ids;
+    }
+
+    // Жанры этого набора, которых нет в other
+    public GenreSet minus(GenreSet other) {
+        GenreSet result = new GenreSet();
+        result.mask = mask & ~other.mask;
+        result.extra = Arrays.stream(extra)
+                .filter(id -> !other.contains(id))
+                .toArray();
+        return result;
+    }
+
+    public GenreSet copy() {
+        GenreSet copy = new GenreSet();
+        copy.mask = mask;
+        copy.extra = extra;
+        return copy;
+    }
+
+    private static boolean inMask(int id) {
+        return id >= 0 && id < MASK_BITS;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof GenreSet other && mask == other.mask && Arrays.equals(extra, other.extra);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mask) * 31 + Arrays.hashCode(extra);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(ids());
+    }
+}
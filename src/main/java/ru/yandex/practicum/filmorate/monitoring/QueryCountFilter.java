@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+// Считает SQL-запросы каждого HTTP-запроса, отдаёт их число и время в базе в заголовках ответа
+// и метриках, а при превышении бюджета пишет предупреждение в лог
+@Slf4j
+@Component
+public class QueryCountFilter extends OncePerRequestFilter {
+    public static final String QUERY_COUNT_HEADER = "X-Query-Count";
+    public static final String QUERY_TIME_HEADER = "X-Query-Time-Ms";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxStatements;
+
+    public QueryCountFilter(MeterRegistry meterRegistry,
+                            @Value("${filmorate.query-budget.max-statements:0}") int maxStatements) {
+        this.meterRegistry = meterRegistry;
+        this.maxStatements = maxStatements;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        QueryStats stats = QueryStats.start();
+        QueryStatsResponseWrapper wrappedResponse = new QueryStatsResponseWrapper(response, stats);
+        try {
+            filterChain.doFilter(request, wrappedResponse);
+        } finally {
+            QueryStats.clear();
+            wrappedResponse.writeHeaders();
+            record(request, stats);
+        }
+    }
+
+    private void record(HttpServletRequest request, QueryStats stats) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+
+        DistributionSummary.builder("filmorate.http.queries")
+                .description("Число SQL-запросов на один HTTP-запрос")
+                .tags("method", request.getMethod(), "uri", uri)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(stats.getStatements());
+        Timer.builder("filmorate.http.query.time")
+                .description("Суммарное время SQL-запросов на один HTTP-запрос")
+                .tags("method", request.getMethod(), "uri", uri)
+                .register(meterRegistry)
+                .record(stats.getNanos(), TimeUnit.NANOSECONDS);
+
+        if (maxStatements > 0 && stats.getStatements() > maxStatements) {
+            meterRegistry.counter("filmorate.http.queries.over.budget", "method", request.getMethod(), "uri", uri)
+                    .increment();
+            log.warn("{} {} выполнил {} SQL-запросов при бюджете {}",
+                    request.getMethod(), request.getRequestURI(), stats.getStatements(), maxStatements);
+        }
+    }
+
+    // Заголовки нужно выставить до начала записи тела, поэтому они пишутся при первом обращении к потоку ответа.
+    // Запросы, выполненные уже во время записи тела, попадают только в метрики
+    private static class QueryStatsResponseWrapper extends HttpServletResponseWrapper {
+        private final QueryStats stats;
+        private boolean headersWritten;
+
+        QueryStatsResponseWrapper(HttpServletResponse response, QueryStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeaders();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeaders();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeaders();
+            super.flushBuffer();
+        }
+
+        void writeHeaders() {
+            if (headersWritten || isCommitted()) {
+                return;
+            }
+            headersWritten = true;
+            setHeader(QUERY_COUNT_HEADER, String.valueOf(stats.getStatements()));
+            setHeader(QUERY_TIME_HEADER, String.valueOf(TimeUnit.NANOSECONDS.toMillis(stats.getNanos())));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Обёртка над пулом соединений: каждый вызов execute* у Statement, PreparedStatement и CallableStatement
+// засчитывается в QueryStats текущего запроса вместе со временем выполнения. Пачка executeBatch считается
+// одним обращением к базе. Время чтения строк из ResultSet после execute* не учитывается
+public class QueryCountingDataSource extends DelegatingDataSource {
+
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxyConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxyConnection(super.getConnection(username, password));
+    }
+
+    private static Connection proxyConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement
+                            && Statement.class.isAssignableFrom(method.getReturnType())) {
+                        return proxyStatement(statement, method.getReturnType());
+                    }
+                    return result;
+                });
+    }
+
+    private static Object proxyStatement(Statement statement, Class<?> statementType) {
+        return Proxy.newProxyInstance(QueryCountingDataSource.class.getClassLoader(),
+                new Class<?>[]{statementType}, (proxy, method, args) -> {
+                    if (!method.getName().startsWith("execute")) {
+                        return invoke(statement, method, args);
+                    }
+
+                    long startedAt = System.nanoTime();
+                    try {
+                        return invoke(statement, method, args);
+                    } finally {
+                        QueryStats.record(System.nanoTime() - startedAt);
+                    }
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
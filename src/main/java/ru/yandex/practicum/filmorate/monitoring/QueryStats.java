@@ -0,0 +1,40 @@
+package ru.yandex.practicum.filmorate.monitoring;
+
+// SQL-статистика текущего HTTP-запроса: число выполненных запросов и суммарное время в базе.
+// Запрос обрабатывается одним потоком, поэтому статистика привязывается к нему через ThreadLocal
+public final class QueryStats {
+    private static final ThreadLocal<QueryStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long nanos;
+
+    private QueryStats() {
+    }
+
+    public static QueryStats start() {
+        QueryStats stats = new QueryStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    // Запросы вне HTTP-запроса (планировщик, инициализация) не учитываются
+    static void record(long elapsedNanos) {
+        QueryStats stats = CURRENT.get();
+        if (stats != null) {
+            stats.statements++;
+            stats.nanos += elapsedNanos;
+        }
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+}
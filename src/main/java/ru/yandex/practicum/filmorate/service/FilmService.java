@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -8,27 +9,48 @@ import ru.yandex.practicum.filmorate.dao.MpaDao;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
-import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.SearchField;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 import java.time.LocalDate;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@Timed(value = "filmorate.service", histogram = true, percentiles = {0.5, 0.95, 0.99})
 public class FilmService {
     private static final LocalDate VALID_RELEASE_DATE = LocalDate.of(1895, 12, 28);
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_BATCH_SIZE = 10000;
 
     private final FilmStorage filmStorage;
-    private final UserService userService;
+    private final UserStorage userStorage;
     private final MpaDao mpaDao;
     private final GenreDao genreDao;
+    // Есть только при filmorate.likes.write-behind.enabled=true
+    private final Optional<LikeWriteBehindQueue> likeQueue;
 
     public List<Film> getAllFilms() {
         return filmStorage.findAll();
     }
 
+    public List<Film> getFilmsPage(long afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return filmStorage.findPage(afterId, limit);
+    }
+
+    public void exportFilms(Consumer<Film> consumer) {
+        filmStorage.streamAll(consumer);
+    }
+
     public Film getFilmById(Long id) {
         return filmStorage.findById(id)
                 .orElseThrow(() -> new NotFoundException("Фильм с ID " + id + " не найден"));
@@ -36,22 +58,24 @@ public class FilmService {
 
     public Film createFilm(Film film) {
         validateFilm(film);
+        validateReferences(film);
+        return filmStorage.create(film);
+    }
 
-        // Проверяем существование MPA
-        if (!mpaDao.existsById(film.getMpa().getId())) {
-            throw new NotFoundException("MPA с id=" + film.getMpa().getId() + " не найден");
+    public List<Film> createFilms(List<Film> films) {
+        if (films.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("За один запрос можно добавить не более " + MAX_BATCH_SIZE + " фильмов");
         }
 
-        // Проверяем существование жанров
-        if (film.getGenres() != null) {
-            for (Genre genre : film.getGenres()) {
-                if (!genreDao.existsById(genre.getId())) {
-                    throw new NotFoundException("Жанр с id=" + genre.getId() + " не найден");
-                }
-            }
+        // Проверяем все фильмы до записи, чтобы пачка сохранялась целиком или не сохранялась вовсе
+        for (Film film : films) {
+            validateFilm(film);
+            validateReferences(film);
         }
 
-        return filmStorage.create(film);
+        List<Film> createdFilms = filmStorage.createAll(films);
+        log.info("Добавлено фильмов пачкой: {}", createdFilms.size());
+        return createdFilms;
     }
 
     public Film updateFilm(Film film) {
@@ -59,58 +83,90 @@ public class FilmService {
             throw new NotFoundException("Фильм с ID " + film.getId() + " не найден");
         }
         validateFilm(film);
-
-        // Проверяем существование MPA
-        if (!mpaDao.existsById(film.getMpa().getId())) {
-            throw new NotFoundException("MPA с id=" + film.getMpa().getId() + " не найден");
-        }
-
-        // Проверяем существование жанров
-        if (film.getGenres() != null) {
-            for (Genre genre : film.getGenres()) {
-                if (!genreDao.existsById(genre.getId())) {
-                    throw new NotFoundException("Жанр с id=" + genre.getId() + " не найден");
-                }
-            }
-        }
-
+        validateReferences(film);
         return filmStorage.update(film);
     }
 
     public void addLike(Long filmId, Long userId) {
-        getFilmById(filmId);
-        userService.getUserById(userId);
-
-        if (filmStorage instanceof FilmDbStorage) {
-            FilmDbStorage dbStorage = (FilmDbStorage) filmStorage;
-            dbStorage.addLike(filmId, userId);
+        if (likeQueue.isPresent()) {
+            requireFilmAndUser(filmId, userId);
+            likeQueue.get().enqueue(filmId, userId, true);
         } else {
-            throw new ValidationException("Метод добавления лайка не поддерживается");
+            // Существование фильма и пользователя проверяется хранилищем вместе с записью
+            filmStorage.addLike(filmId, userId);
         }
 
         log.info("Пользователь {} поставил лайк фильму {}", userId, filmId);
     }
 
     public void removeLike(Long filmId, Long userId) {
-        getFilmById(filmId);
-        userService.getUserById(userId);
-
-        if (filmStorage instanceof FilmDbStorage) {
-            FilmDbStorage dbStorage = (FilmDbStorage) filmStorage;
-            dbStorage.removeLike(filmId, userId);
+        if (likeQueue.isPresent()) {
+            requireFilmAndUser(filmId, userId);
+            likeQueue.get().enqueue(filmId, userId, false);
         } else {
-            throw new ValidationException("Метод удаления лайка не поддерживается");
+            filmStorage.removeLike(filmId, userId);
         }
 
         log.info("Пользователь {} удалил лайк с фильма {}", userId, filmId);
     }
 
-    public List<Film> getPopularFilms(int count) {
-        if (filmStorage instanceof FilmDbStorage) {
-            FilmDbStorage dbStorage = (FilmDbStorage) filmStorage;
-            return dbStorage.getPopularFilms(count);
-        } else {
-            throw new ValidationException("Метод получения популярных фильмов не поддерживается");
+    public long[] getFilmLikes(long filmId, long afterUserId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        if (!filmStorage.existsById(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        return filmStorage.getLikes(filmId, afterUserId, limit);
+    }
+
+    // При отложенной записи ошибка должна вернуться до постановки в очередь,
+    // поэтому существование проверяется заранее по кэшам хранилищ
+    private void requireFilmAndUser(long filmId, long userId) {
+        if (!filmStorage.existsById(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+    }
+
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return filmStorage.getPopularFilms(count, genreId, year);
+    }
+
+    public List<Film> searchFilms(String query, List<String> by, int count) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Поисковый запрос не может быть пустым");
+        }
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            throw new ValidationException("Число результатов должно быть от 1 до " + MAX_PAGE_SIZE);
+        }
+
+        Set<SearchField> fields = EnumSet.noneOf(SearchField.class);
+        for (String field : by) {
+            switch (field.trim().toLowerCase(Locale.ROOT)) {
+                case "title" -> fields.add(SearchField.TITLE);
+                case "description" -> fields.add(SearchField.DESCRIPTION);
+                default -> throw new ValidationException("Поиск возможен только по полям title и description");
+            }
+        }
+        return filmStorage.search(query, fields, count);
+    }
+
+    private void validateReferences(Film film) {
+        // Проверяем существование MPA
+        if (!mpaDao.existsById(film.getMpa().getId())) {
+            throw new NotFoundException("MPA с id=" + film.getMpa().getId() + " не найден");
+        }
+
+        // Проверяем существование жанров
+        if (film.getGenres() != null) {
+            for (int genreId : film.getGenres().ids()) {
+                if (!genreDao.existsById(genreId)) {
+                    throw new NotFoundException("Жанр с id=" + genreId + " не найден");
+                }
+            }
         }
     }
 
@@ -0,0 +1,131 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeChange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Отложенная запись лайков: запрос только ставит изменение в очередь, а в базу оно попадает
+// пачкой по расписанию. Для пары фильм-пользователь хранится лишь последнее изменение,
+// поэтому лайк и его отмена до сброса очереди дают одну запись вместо двух.
+// Очередь ограничена: когда места нет, запрос недолго ждёт сброса по расписанию и получает 503,
+// а не пишет в базу сам — иначе при сбоях базы запросы повторяли бы неудачную запись
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+public class LikeWriteBehindQueue implements MeterBinder {
+    private final FilmStorage filmStorage;
+    private final long offerTimeoutMs;
+    private final Map<LikeKey, LikeChange> pending = new ConcurrentHashMap<>();
+    // Места в очереди. Место освобождается только после успешной записи, поэтому пачка,
+    // которая пишется или ждёт повтора после сбоя, тоже занимает очередь
+    private final Semaphore slots;
+    // ReentrantLock вместо synchronized, чтобы запись в базу не закрепляла виртуальный поток за носителем
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public LikeWriteBehindQueue(FilmStorage filmStorage,
+                                @Value("${filmorate.likes.write-behind.capacity:10000}") int capacity,
+                                @Value("${filmorate.likes.write-behind.offer-timeout-ms:100}") long offerTimeoutMs) {
+        this.filmStorage = filmStorage;
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.slots = new Semaphore(capacity);
+        log.info("Отложенная запись лайков включена, размер очереди: {}", capacity);
+    }
+
+    public void enqueue(long filmId, long userId, boolean liked) {
+        LikeKey key = new LikeKey(filmId, userId);
+        LikeChange change = new LikeChange(filmId, userId, liked);
+        // Замена ожидающего изменения той же пары не занимает нового места
+        if (pending.computeIfPresent(key, (k, old) -> change) != null) {
+            return;
+        }
+
+        acquireSlot();
+        if (pending.put(key, change) != null) {
+            // Пару успел добавить параллельный запрос, и его место уже занято
+            slots.release();
+        }
+    }
+
+    private void acquireSlot() {
+        try {
+            if (slots.tryAcquire(offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new ServiceUnavailableException("Очередь лайков переполнена, повторите запрос позже");
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<LikeChange> batch = new ArrayList<>(pending.size());
+            for (LikeKey key : pending.keySet()) {
+                LikeChange change = pending.remove(key);
+                if (change != null) {
+                    batch.add(change);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            try {
+                filmStorage.applyLikeChanges(batch);
+            } catch (RuntimeException e) {
+                // Возвращаем пачку в очередь, не затирая изменения, пришедшие во время записи.
+                // Вытесненное ими изменение больше не нужно и отдаёт своё место
+                for (LikeChange change : batch) {
+                    if (pending.putIfAbsent(new LikeKey(change.filmId(), change.userId()), change) != null) {
+                        slots.release();
+                    }
+                }
+                log.error("Не удалось записать пачку лайков, изменений: {}", batch.size(), e);
+                throw e;
+            }
+            slots.release(batch.size());
+            log.debug("Записана пачка лайков, изменений: {}", batch.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("filmorate.likes.queue.size", pending, Map::size)
+                .description("Изменения лайков, ожидающие записи в базу")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void drain() {
+        log.info("Остановка приложения: сброс очереди лайков, изменений: {}", pending.size());
+        flush();
+    }
+
+    private record LikeKey(long filmId, long userId) {
+    }
+}
@@ -1,26 +1,39 @@
 package ru.yandex.practicum.filmorate.service;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
-import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 import java.time.LocalDate;
 import java.util.List;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@Timed(value = "filmorate.service", histogram = true, percentiles = {0.5, 0.95, 0.99})
 public class UserService {
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final UserStorage userStorage;
+    private final FilmStorage filmStorage;
 
     public List<User> getAllUsers() {
         return userStorage.findAll();
     }
 
+    public List<User> getUsersPage(long afterId, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return userStorage.findPage(afterId, limit);
+    }
+
     public User getUserById(Long id) {
         return userStorage.findById(id)
                 .orElseThrow(() -> new NotFoundException("Пользователь с ID " + id + " не найден"));
@@ -50,29 +63,14 @@ public class UserService {
             throw new ValidationException("Пользователь не может добавить себя в друзья");
         }
 
-        getUserById(userId);
-        getUserById(friendId);
-
-        if (userStorage instanceof UserDbStorage) {
-            UserDbStorage dbStorage = (UserDbStorage) userStorage;
-            dbStorage.addFriend(userId, friendId);
-        } else {
-            throw new ValidationException("Метод добавления друга не поддерживается");
-        }
+        // Существование пользователей проверяется хранилищем вместе с записью
+        userStorage.addFriend(userId, friendId);
 
         log.info("Пользователь {} добавил в друзья пользователя {}", userId, friendId);
     }
 
     public void removeFriend(Long userId, Long friendId) {
-        getUserById(userId);
-        getUserById(friendId);
-
-        if (userStorage instanceof UserDbStorage) {
-            UserDbStorage dbStorage = (UserDbStorage) userStorage;
-            dbStorage.removeFriend(userId, friendId);
-        } else {
-            throw new ValidationException("Метод удаления друга не поддерживается");
-        }
+        userStorage.removeFriend(userId, friendId);
 
         log.info("Пользователь {} удалил из друзей пользователя {}", userId, friendId);
     }
@@ -80,24 +78,27 @@ public class UserService {
     public List<User> getFriends(Long userId) {
         getUserById(userId);
 
-        if (userStorage instanceof UserDbStorage) {
-            UserDbStorage dbStorage = (UserDbStorage) userStorage;
-            return dbStorage.getFriends(userId);
-        } else {
-            throw new ValidationException("Метод получения друзей не поддерживается");
-        }
+        return userStorage.getFriends(userId);
     }
 
     public List<User> getCommonFriends(Long userId, Long otherId) {
-        getUserById(userId);
-        getUserById(otherId);
+        List<User> commonFriends = userStorage.getCommonFriends(userId, otherId);
+
+        // Общие друзья бывают только у существующих пользователей, поэтому проверяем их лишь при пустом ответе
+        if (commonFriends.isEmpty()) {
+            getUserById(userId);
+            getUserById(otherId);
+        }
+        return commonFriends;
+    }
 
-        if (userStorage instanceof UserDbStorage) {
-            UserDbStorage dbStorage = (UserDbStorage) userStorage;
-            return dbStorage.getCommonFriends(userId, otherId);
-        } else {
-            throw new ValidationException("Метод получения общих друзей не поддерживается");
+    public List<Film> getRecommendations(Long userId, int count) {
+        if (count <= 0 || count > MAX_PAGE_SIZE) {
+            throw new ValidationException("Число рекомендаций должно быть от 1 до " + MAX_PAGE_SIZE);
         }
+        getUserById(userId);
+
+        return filmStorage.getRecommendations(userId, count);
     }
 
     private void validateUser(User user) {
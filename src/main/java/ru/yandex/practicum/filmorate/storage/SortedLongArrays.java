@@ -0,0 +1,48 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+// Операции над отсортированными массивами long, которые индексы в памяти используют
+// вместо Set<Long>: восемь байт на элемент без упаковки и узлов хэш-таблицы.
+// Массивы не изменяются на месте: при вставке и удалении возвращается новая копия
+public final class SortedLongArrays {
+    public static final long[] EMPTY = new long[0];
+
+    private SortedLongArrays() {
+    }
+
+    // Возвращает тот же массив, если значение уже есть
+    public static long[] insert(long[] sorted, long value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position >= 0) {
+            return sorted;
+        }
+
+        int insertAt = -position - 1;
+        long[] updated = new long[sorted.length + 1];
+        System.arraycopy(sorted, 0, updated, 0, insertAt);
+        updated[insertAt] = value;
+        System.arraycopy(sorted, insertAt, updated, insertAt + 1, sorted.length - insertAt);
+        return updated;
+    }
+
+    // Возвращает тот же массив, если значения нет
+    public static long[] remove(long[] sorted, long value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+
+        long[] updated = new long[sorted.length - 1];
+        System.arraycopy(sorted, 0, updated, 0, position);
+        System.arraycopy(sorted, position + 1, updated, position, sorted.length - position - 1);
+        return updated;
+    }
+
+    // До limit значений, строго больших after
+    public static long[] page(long[] sorted, long after, int limit) {
+        int position = Arrays.binarySearch(sorted, after);
+        int from = position >= 0 ? position + 1 : -position - 1;
+        return Arrays.copyOfRange(sorted, from, (int) Math.min(sorted.length, (long) from + limit));
+    }
+}
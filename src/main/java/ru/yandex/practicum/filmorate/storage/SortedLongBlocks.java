@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+// Отсортированный набор long, разбитый на блоки не длиннее MAX_BLOCK. Как и массивы
+// SortedLongArrays, набор не изменяется после публикации, и читатели обходят его без блокировок,
+// но вставка и удаление копируют только один блок и таблицу ссылок на блоки. Для фильма
+// с сотнями тысяч лайков это килобайты на лайк вместо копии всего списка
+public final class SortedLongBlocks {
+    public static final SortedLongBlocks EMPTY = new SortedLongBlocks(new long[0][], 0);
+
+    // Переполненный блок делится пополам, опустевший удаляется, а соседние короткие блоки сливаются
+    private static final int MAX_BLOCK = 1024;
+
+    private final long[][] blocks;
+    private final int size;
+
+    private SortedLongBlocks(long[][] blocks, int size) {
+        this.blocks = blocks;
+        this.size = size;
+    }
+
+    public static SortedLongBlocks of(long[] sorted) {
+        if (sorted.length == 0) {
+            return EMPTY;
+        }
+
+        // Блоки заполняются наполовину, чтобы первые вставки не делили их сразу
+        int blockSize = MAX_BLOCK / 2;
+        long[][] blocks = new long[(sorted.length + blockSize - 1) / blockSize][];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = Arrays.copyOfRange(sorted, i * blockSize, Math.min(sorted.length, (i + 1) * blockSize));
+        }
+        return new SortedLongBlocks(blocks, sorted.length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int blockCount() {
+        return blocks.length;
+    }
+
+    // Блок нельзя изменять: он общий для всех версий набора
+    public long[] block(int index) {
+        return blocks[index];
+    }
+
+    public boolean contains(long value) {
+        int index = blockIndex(value);
+        return index >= 0 && Arrays.binarySearch(blocks[index], value) >= 0;
+    }
+
+    // Возвращает тот же набор, если значение уже есть
+    public SortedLongBlocks insert(long value) {
+        if (blocks.length == 0) {
+            return new SortedLongBlocks(new long[][]{{value}}, 1);
+        }
+
+        int index = Math.max(0, blockIndex(value));
+        long[] block = SortedLongArrays.insert(blocks[index], value);
+        if (block == blocks[index]) {
+            return this;
+        }
+
+        if (block.length <= MAX_BLOCK) {
+            long[][] updated = blocks.clone();
+            updated[index] = block;
+            return new SortedLongBlocks(updated, size + 1);
+        }
+
+        long[][] updated = new long[blocks.length + 1][];
+        System.arraycopy(blocks, 0, updated, 0, index);
+        updated[index] = Arrays.copyOfRange(block, 0, block.length / 2);
+        updated[index + 1] = Arrays.copyOfRange(block, block.length / 2, block.length);
+        System.arraycopy(blocks, index + 1, updated, index + 2, blocks.length - index - 1);
+        return new SortedLongBlocks(updated, size + 1);
+    }
+
+    // Возвращает тот же набор, если значения нет
+    public SortedLongBlocks remove(long value) {
+        int index = blockIndex(value);
+        if (index < 0) {
+            return this;
+        }
+        long[] block = SortedLongArrays.remove(blocks[index], value);
+        if (block == blocks[index]) {
+            return this;
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+
+        if (block.length == 0) {
+            long[][] updated = new long[blocks.length - 1][];
+            System.arraycopy(blocks, 0, updated, 0, index);
+            System.arraycopy(blocks, index + 1, updated, index, blocks.length - index - 1);
+            return new SortedLongBlocks(updated, size - 1);
+        }
+
+        int next = index + 1;
+        if (next < blocks.length && block.length + blocks[next].length <= MAX_BLOCK / 2) {
+            long[] merged = Arrays.copyOf(block, block.length + blocks[next].length);
+            System.arraycopy(blocks[next], 0, merged, block.length, blocks[next].length);
+            long[][] updated = new long[blocks.length - 1][];
+            System.arraycopy(blocks, 0, updated, 0, index);
+            updated[index] = merged;
+            System.arraycopy(blocks, next + 1, updated, next, blocks.length - next - 1);
+            return new SortedLongBlocks(updated, size - 1);
+        }
+
+        long[][] updated = blocks.clone();
+        updated[index] = block;
+        return new SortedLongBlocks(updated, size - 1);
+    }
+
+    // До limit значений, строго больших after
+    public long[] page(long after, int limit) {
+        long[] result = new long[Math.min(limit, size)];
+        int count = 0;
+        for (int i = Math.max(0, blockIndex(after)); i < blocks.length && count < result.length; i++) {
+            long[] block = blocks[i];
+            int position = Arrays.binarySearch(block, after);
+            int from = position >= 0 ? position + 1 : -position - 1;
+            int taken = Math.min(block.length - from, result.length - count);
+            if (taken > 0) {
+                System.arraycopy(block, from, result, count, taken);
+                count += taken;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    public long[] toArray() {
+        long[] result = new long[size];
+        int position = 0;
+        for (long[] block : blocks) {
+            System.arraycopy(block, 0, result, position, block.length);
+            position += block.length;
+        }
+        return result;
+    }
+
+    // Последний блок, первый элемент которого не больше value, или -1, если value меньше всех
+    private int blockIndex(long value) {
+        int low = 0;
+        int high = blocks.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (blocks[middle][0] <= value) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Блокировки по id для индексов в памяти, разбитые на фиксированное число полос.
+// Запись в базу и изменение индекса выполняются под блокировкой ключа, а внутри транзакции
+// блокировка держится до её завершения. Иначе два параллельных изменения одной связи могли бы
+// попасть в индекс в порядке, обратном порядку фиксации в базе
+public final class StripedLocks {
+    private static final int STRIPES = 256;
+
+    // ReentrantLock вместо synchronized, чтобы ожидание не закрепляло виртуальный поток за носителем
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public StripedLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // Полосы берутся по возрастанию номера, поэтому потоки с пересекающимися наборами ключей
+    // не блокируют друг друга навсегда
+    public void run(Runnable action, long... keys) {
+        int[] stripes = Arrays.stream(keys).mapToInt(StripedLocks::stripe).sorted().distinct().toArray();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+
+        boolean heldUntilCompletion = false;
+        try {
+            action.run();
+            if (TransactionSynchronizationManager.isSynchronizationActive()
+                    && TransactionSynchronizationManager.isActualTransactionActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        unlock(stripes);
+                    }
+                });
+                heldUntilCompletion = true;
+            }
+        } finally {
+            if (!heldUntilCompletion) {
+                unlock(stripes);
+            }
+        }
+    }
+
+    private void unlock(int[] stripes) {
+        for (int stripe : stripes) {
+            locks[stripe].unlock();
+        }
+    }
+
+    private static int stripe(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Кэш карточек фильмов поверх FilmDbStorage. Фильмы читаются гораздо чаще, чем меняются,
+// поэтому findById обслуживается из памяти, а любая запись по фильму сбрасывает его из кэша.
+// Вытеснение по размеру (W-TinyLFU) ограничивает объём памяти под кэш
+@Slf4j
+@Primary
+@Repository
+@Profile("!in-memory")
+public class CachingFilmStorage implements FilmStorage, MeterBinder {
+    private final FilmDbStorage filmDbStorage;
+    private final Cache<Long, Film> films;
+
+    public CachingFilmStorage(FilmDbStorage filmDbStorage,
+                              @Value("${filmorate.cache.films.maximum-size:10000}") long maximumSize) {
+        this.filmDbStorage = filmDbStorage;
+        this.films = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        log.info("Кэш фильмов включён, максимальный размер: {}", maximumSize);
+    }
+
+    @Override
+    public Film create(Film film) {
+        return filmDbStorage.create(film);
+    }
+
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        return filmDbStorage.createAll(films);
+    }
+
+    // Кэш сбрасывается после записи: загрузка ключа в Caffeine атомарна,
+    // поэтому параллельное чтение не может вернуть в кэш старую версию фильма
+    @Override
+    public Film update(Film film) {
+        Film updated = filmDbStorage.update(film);
+        films.invalidate(film.getId());
+        return updated;
+    }
+
+    @Override
+    public List<Film> findAll() {
+        return filmDbStorage.findAll();
+    }
+
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        return filmDbStorage.findPage(afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        filmDbStorage.streamAll(consumer);
+    }
+
+    @Override
+    public Optional<Film> findById(Long id) {
+        // Отсутствующие фильмы не кэшируются: загрузчик, вернувший null, ничего не сохраняет
+        Film film = films.get(id, key -> filmDbStorage.findById(key).orElse(null));
+        return Optional.ofNullable(film).map(CachingFilmStorage::copyOf);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        // Проверка через asMap не считается обращением к кэшу: не искажает статистику попаданий и вытеснение
+        return films.asMap().containsKey(id) || filmDbStorage.existsById(id);
+    }
+
+    @Override
+    public void addLike(long filmId, long userId) {
+        filmDbStorage.addLike(filmId, userId);
+        films.invalidate(filmId);
+    }
+
+    @Override
+    public void removeLike(long filmId, long userId) {
+        filmDbStorage.removeLike(filmId, userId);
+        films.invalidate(filmId);
+    }
+
+    @Override
+    public long[] getLikes(long filmId, long afterUserId, int limit) {
+        return filmDbStorage.getLikes(filmId, afterUserId, limit);
+    }
+
+    @Override
+    public void applyLikeChanges(Collection<LikeChange> changes) {
+        filmDbStorage.applyLikeChanges(changes);
+        films.invalidateAll(changes.stream().map(LikeChange::filmId).toList());
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return filmDbStorage.getPopularFilms(count, genreId, year);
+    }
+
+    @Override
+    public List<Film> search(String query, Set<SearchField> by, int count) {
+        return filmDbStorage.search(query, by, count);
+    }
+
+    @Override
+    public List<Film> getRecommendations(long userId, int count) {
+        return filmDbStorage.getRecommendations(userId, count);
+    }
+
+    public CacheStats stats() {
+        return films.stats();
+    }
+
+    // Spring Boot регистрирует метрики попаданий и промахов кэша в реестре приложения
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, films, "films");
+    }
+
+    // Вызывающий код получает копию, чтобы изменения объекта не попадали в кэш
+    private static Film copyOf(Film source) {
+        Film film = new Film();
+        film.setId(source.getId());
+        film.setName(source.getName());
+        film.setDescription(source.getDescription());
+        film.setReleaseDate(source.getReleaseDate());
+        film.setDuration(source.getDuration());
+        film.setMpa(source.getMpa());
+        film.setGenres(source.getGenres().copy());
+        film.setLikesCount(source.getLikesCount());
+        return film;
+    }
+}
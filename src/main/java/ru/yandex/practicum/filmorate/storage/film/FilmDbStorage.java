@@ -1,44 +1,149 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.context.annotation.Primary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.dao.MpaDao;
 import ru.yandex.practicum.filmorate.dao.mapper.FilmMapper;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.GenreSet;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+@Slf4j
 @Repository
-@Primary
+@Profile("!in-memory")
 @RequiredArgsConstructor
+@Timed(value = "filmorate.storage", histogram = true, percentiles = {0.5, 0.95, 0.99})
 public class FilmDbStorage implements FilmStorage {
+    // Максимальное число id фильмов в одном IN-списке при догрузке связанных данных
+    private static final int HYDRATION_BATCH_SIZE = 1000;
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final String INSERT_FILM_SQL = "INSERT INTO films (name, description, release_date, duration, mpa_id) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_FILM_GENRE_SQL = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
+    private static final String DELETE_FILM_GENRE_SQL = "DELETE FROM film_genres WHERE film_id = ? AND genre_id = ?";
+    private static final int LIKE_BATCH_SIZE = 1000;
+    // Вставка проходит только если фильм и пользователь существуют, а лайка ещё нет
+    private static final String INSERT_LIKE_SQL = "INSERT INTO likes (film_id, user_id) "
+            + "SELECT f.id, u.id FROM films f JOIN users u ON u.id = ? "
+            + "WHERE f.id = ? "
+            + "AND NOT EXISTS (SELECT 1 FROM likes l WHERE l.film_id = f.id AND l.user_id = u.id)";
+    private static final String DELETE_LIKE_SQL = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
+
     private final JdbcTemplate jdbcTemplate;
     private final FilmMapper filmMapper;
+    private final MpaDao mpaDao;
+    private final FilmRankings rankings = new FilmRankings();
+    private final LikeMatrix likeMatrix = new LikeMatrix();
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+    // Лайки одного фильма пишутся в базу и в матрицу под блокировкой фильма до фиксации транзакции:
+    // рейтингам порядок не важен, а лайк и его отмена, применённые к матрице наоборот, оставили бы
+    // в ней лайк, которого нет в базе
+    private final StripedLocks likeLocks = new StripedLocks();
+
+    // Все структуры в памяти строятся из базы при старте в одном месте и в одном порядке
+    @PostConstruct
+    public void init() {
+        buildRankings();
+        buildLikeMatrix();
+        buildSearchIndex();
+    }
+
+    // Жанры всех фильмов читаются заранее одним запросом, затем фильмы раскладываются по рейтингам
+    private void buildRankings() {
+        Map<Long, GenreSet> genres = new HashMap<>();
+        jdbcTemplate.query("SELECT film_id, genre_id FROM film_genres", rs -> {
+            genres.computeIfAbsent(rs.getLong("film_id"), id -> new GenreSet()).add(rs.getInt("genre_id"));
+        });
+
+        rankings.clear();
+        jdbcTemplate.query("SELECT id, release_date, likes_count FROM films", rs -> {
+            long filmId = rs.getLong("id");
+            Date releaseDate = rs.getDate("release_date");
+            rankings.put(filmId, genres.get(filmId), releaseDate != null ? releaseDate.toLocalDate() : null,
+                    rs.getLong("likes_count"));
+        });
+        log.info("Рейтинги популярных фильмов построены");
+    }
+
+    private void buildLikeMatrix() {
+        likeMatrix.clear();
+        loadSortedGroups("SELECT user_id, film_id FROM likes ORDER BY user_id, film_id", likeMatrix::putUser);
+        loadSortedGroups("SELECT film_id, user_id FROM likes ORDER BY film_id, user_id", likeMatrix::putFilm);
+        log.info("Матрица лайков для рекомендаций построена");
+    }
+
+    private void buildSearchIndex() {
+        searchIndex.clear();
+        searchIndex.bulkPut(sink -> jdbcTemplate.query("SELECT id, name, description FROM films ORDER BY id", rs -> {
+            sink.put(rs.getLong("id"), rs.getString("name"), rs.getString("description"));
+        }));
+        log.info("Поисковый индекс фильмов построен");
+    }
+
+    // Строки отсортированы по первому столбцу, поэтому массив второго столбца для каждого ключа
+    // собирается целиком за один проход, как индекс друзей в UserDbStorage
+    private void loadSortedGroups(String sql, GroupConsumer consumer) {
+        jdbcTemplate.query(sql, rs -> {
+            long currentKey = 0;
+            long[] values = new long[16];
+            int size = 0;
+            while (rs.next()) {
+                long key = rs.getLong(1);
+                if (key != currentKey && size > 0) {
+                    consumer.accept(currentKey, Arrays.copyOf(values, size));
+                    size = 0;
+                }
+                currentKey = key;
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = rs.getLong(2);
+            }
+            if (size > 0) {
+                consumer.accept(currentKey, Arrays.copyOf(values, size));
+            }
+            return null;
+        });
+    }
 
     @Override
     public Film create(Film film) {
-        String sql = "INSERT INTO films (name, description, release_date, duration, mpa_id) "
-                + "VALUES (?, ?, ?, ?, ?)";
-
         KeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, film.getName());
-            ps.setString(2, film.getDescription());
-            ps.setDate(3, film.getReleaseDate() != null ? Date.valueOf(film.getReleaseDate()) : null);
-            ps.setInt(4, film.getDuration());
-            ps.setInt(5, film.getMpa().getId());
+            PreparedStatement ps = connection.prepareStatement(INSERT_FILM_SQL, Statement.RETURN_GENERATED_KEYS);
+            setFilmParameters(ps, film);
             return ps;
         }, keyHolder);
 
@@ -46,11 +151,65 @@ public class FilmDbStorage implements FilmStorage {
         film.setId(filmId);
 
         saveGenres(filmId, film.getGenres());
+        afterCommit(() -> {
+            rankings.put(filmId, film.getGenres(), film.getReleaseDate(), 0);
+            searchIndex.put(filmId, film.getName(), film.getDescription());
+        });
 
         return film;
     }
 
     @Override
+    @Transactional
+    public List<Film> createAll(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_FILM_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setFilmParameters(ps, films.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> genreLinks = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).longValue());
+            for (int genreId : film.getGenres().ids()) {
+                genreLinks.add(new Object[]{film.getId(), genreId});
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_FILM_GENRE_SQL, genreLinks);
+
+        afterCommit(() -> {
+            films.forEach(film -> rankings.put(film.getId(), film.getGenres(), film.getReleaseDate(), 0));
+            searchIndex.bulkPut(sink -> films.forEach(film ->
+                    sink.put(film.getId(), film.getName(), film.getDescription())));
+        });
+        return films;
+    }
+
+    private void setFilmParameters(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setDate(3, film.getReleaseDate() != null ? Date.valueOf(film.getReleaseDate()) : null);
+        ps.setInt(4, film.getDuration());
+        ps.setInt(5, film.getMpa().getId());
+    }
+
+    @Override
+    @Transactional
     public Film update(Film film) {
         String sql = "UPDATE films SET name = ?, description = ?, release_date = ?, "
                 + "duration = ?, mpa_id = ? WHERE id = ?";
@@ -64,6 +223,11 @@ public class FilmDbStorage implements FilmStorage {
                 film.getId());
 
         updateGenres(film.getId(), film.getGenres());
+        afterCommit(() -> {
+            rankings.update(film.getId(), film.getGenres(), film.getReleaseDate());
+            searchIndex.put(film.getId(), film.getName(), film.getDescription());
+        });
+        film.setLikesCount(rankings.getLikes(film.getId()));
 
         return film;
     }
@@ -72,24 +236,68 @@ public class FilmDbStorage implements FilmStorage {
     public List<Film> findAll() {
         String sql = "SELECT f.* FROM films f ORDER BY f.id";
         List<Film> films = jdbcTemplate.query(sql, filmMapper);
+        loadAdditionalData(films);
+        return films;
+    }
 
-        films.forEach(this::loadAdditionalData);
-
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        String sql = "SELECT f.* FROM films f WHERE f.id > ? ORDER BY f.id LIMIT ?";
+        List<Film> films = jdbcTemplate.query(sql, filmMapper, afterId, limit);
+        loadAdditionalData(films);
         return films;
     }
 
+    // Курсор и догрузка жанров для каждой порции идут в одной транзакции, то есть через одно
+    // соединение: без неё экспорт держал бы два соединения пула, пока курсор открыт
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Film> consumer) {
+        String sql = "SELECT f.* FROM films f ORDER BY f.id";
+        List<Film> chunk = new ArrayList<>(HYDRATION_BATCH_SIZE);
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(EXPORT_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            chunk.add(filmMapper.mapRow(rs, rs.getRow()));
+            if (chunk.size() == HYDRATION_BATCH_SIZE) {
+                flushChunk(chunk, consumer);
+            }
+        });
+
+        flushChunk(chunk, consumer);
+    }
+
+    private void flushChunk(List<Film> chunk, Consumer<Film> consumer) {
+        loadAdditionalData(chunk);
+        chunk.forEach(consumer);
+        chunk.clear();
+    }
+
+    // Фильм вместе с id жанров читается одним запросом, без отдельного обращения за связями
     @Override
     public Optional<Film> findById(Long id) {
-        String sql = "SELECT f.* FROM films f WHERE f.id = ?";
-        List<Film> films = jdbcTemplate.query(sql, filmMapper, id);
+        String sql = "SELECT f.*, "
+                + "ARRAY(SELECT fg.genre_id FROM film_genres fg WHERE fg.film_id = f.id ORDER BY fg.genre_id) "
+                + "AS genre_ids "
+                + "FROM films f WHERE f.id = ?";
+        List<Film> films = jdbcTemplate.query(sql, (rs, rowNum) -> {
+            Film film = filmMapper.mapRow(rs, rowNum);
+            for (Object genreId : (Object[]) rs.getArray("genre_ids").getArray()) {
+                film.getGenres().add(((Number) genreId).intValue());
+            }
+            return film;
+        }, id);
 
         if (films.isEmpty()) {
             return Optional.empty();
         }
 
-        Film film = films.get(0);
-        loadAdditionalData(film);
-        return Optional.of(film);
+        loadMpa(films);
+        return Optional.of(films.get(0));
     }
 
     @Override
@@ -99,84 +307,251 @@ public class FilmDbStorage implements FilmStorage {
         return count != null && count > 0;
     }
 
-    private void saveGenres(long filmId, Set<Genre> genres) {
-        if (genres == null || genres.isEmpty()) {
+    private void saveGenres(long filmId, GenreSet genres) {
+        batchGenreLinks(INSERT_FILM_GENRE_SQL, filmId, genres);
+    }
+
+    // Применяет только разницу между текущими и новыми жанрами фильма
+    private void updateGenres(long filmId, GenreSet genres) {
+        GenreSet requested = genres != null ? genres : new GenreSet();
+        GenreSet current = new GenreSet();
+        jdbcTemplate.query("SELECT genre_id FROM film_genres WHERE film_id = ?",
+                rs -> {
+                    current.add(rs.getInt("genre_id"));
+                }, filmId);
+        if (current.equals(requested)) {
+            return;
+        }
+
+        batchGenreLinks(DELETE_FILM_GENRE_SQL, filmId, current.minus(requested));
+        batchGenreLinks(INSERT_FILM_GENRE_SQL, filmId, requested.minus(current));
+    }
+
+    private void batchGenreLinks(String sql, long filmId, GenreSet genreIds) {
+        if (genreIds == null || genreIds.isEmpty()) {
             return;
         }
 
-        String sql = "INSERT INTO film_genres (film_id, genre_id) VALUES (?, ?)";
+        List<Object[]> args = Arrays.stream(genreIds.ids())
+                .mapToObj(genreId -> new Object[]{filmId, genreId})
+                .toList();
+        jdbcTemplate.batchUpdate(sql, args);
+    }
+
+    // Догружает id жанров для всего списка фильмов одним запросом на каждую пачку id,
+    // название MPA берётся из закэшированного справочника, а названия жанров подставляет
+    // GenreSetSerializer. Лайки не загружаются:
+    // в фильме хранится только их число, а сами id отдаются постранично через getLikes
+    private void loadAdditionalData(List<Film> films) {
+        for (int from = 0; from < films.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Film> batch = films.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, films.size()));
+            Map<Long, Film> filmsById = batch.stream()
+                    .collect(Collectors.toMap(Film::getId, Function.identity(), (a, b) -> a, LinkedHashMap::new));
+
+            loadMpa(batch);
+            loadGenres(filmsById);
+        }
+    }
 
-        for (Genre genre : genres) {
-            jdbcTemplate.update(sql, filmId, genre.getId());
+    private void loadMpa(List<Film> films) {
+        for (Film film : films) {
+            if (film.getMpa() != null) {
+                mpaDao.findById(film.getMpa().getId()).ifPresent(film::setMpa);
+            }
         }
     }
 
-    private void updateGenres(long filmId, Set<Genre> genres) {
-        String deleteSql = "DELETE FROM film_genres WHERE film_id = ?";
-        jdbcTemplate.update(deleteSql, filmId);
+    private void loadGenres(Map<Long, Film> filmsById) {
+        String sql = "SELECT film_id, genre_id FROM film_genres "
+                + "WHERE film_id IN (" + placeholders(filmsById.size()) + ") "
+                + "ORDER BY film_id, genre_id";
 
-        saveGenres(filmId, genres);
+        jdbcTemplate.query(sql, rs -> {
+            filmsById.get(rs.getLong("film_id")).getGenres().add(rs.getInt("genre_id"));
+        }, filmsById.keySet().toArray());
     }
 
-    private void loadAdditionalData(Film film) {
-        loadMpa(film);
-        loadGenres(film);
-        loadLikes(film);
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
     }
 
-    private void loadMpa(Film film) {
-        String sql = "SELECT m.id, m.name FROM mpa m WHERE m.id = ?";
-        Mpa mpa = jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
-            Mpa m = new Mpa();
-            m.setId(rs.getInt("id"));
-            m.setName(rs.getString("name"));
-            return m;
-        }, film.getMpa().getId());
+    @Override
+    @Transactional
+    public void addLike(long filmId, long userId) {
+        likeLocks.run(() -> {
+            if (jdbcTemplate.update(INSERT_LIKE_SQL, userId, filmId) == 0) {
+                requireFilmAndUser(filmId, userId);
+                return;
+            }
+
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE id = ?", filmId);
+            afterCommit(() -> {
+                rankings.add(filmId, 1);
+                likeMatrix.add(filmId, userId);
+            });
+        }, filmId);
+    }
 
-        film.setMpa(mpa);
+    @Override
+    @Transactional
+    public void removeLike(long filmId, long userId) {
+        likeLocks.run(() -> {
+            if (jdbcTemplate.update(DELETE_LIKE_SQL, filmId, userId) == 0) {
+                requireFilmAndUser(filmId, userId);
+                return;
+            }
+
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE id = ?", filmId);
+            afterCommit(() -> {
+                rankings.add(filmId, -1);
+                likeMatrix.remove(filmId, userId);
+            });
+        }, filmId);
     }
 
-    private void loadGenres(Film film) {
-        String sql = "SELECT g.id, g.name FROM genres g "
-                + "JOIN film_genres fg ON g.id = fg.genre_id "
-                + "WHERE fg.film_id = ? ORDER BY g.id";
+    // Страница id пользователей, лайкнувших фильм, читается по первичному ключу (film_id, user_id)
+    // сразу в массив long без промежуточных объектов
+    @Override
+    public long[] getLikes(long filmId, long afterUserId, int limit) {
+        String sql = "SELECT user_id FROM likes WHERE film_id = ? AND user_id > ? ORDER BY user_id LIMIT ?";
+
+        return jdbcTemplate.query(sql, rs -> {
+            long[] userIds = new long[Math.min(limit, 1024)];
+            int size = 0;
+            while (rs.next()) {
+                if (size == userIds.length) {
+                    userIds = Arrays.copyOf(userIds, size * 2);
+                }
+                userIds[size++] = rs.getLong(1);
+            }
+            return Arrays.copyOf(userIds, size);
+        }, filmId, afterUserId, limit);
+    }
 
-        List<Genre> genres = jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Genre genre = new Genre();
-            genre.setId(rs.getInt("id"));
-            genre.setName(rs.getString("name"));
-            return genre;
-        }, film.getId());
+    @Override
+    @Transactional
+    public void applyLikeChanges(Collection<LikeChange> changes) {
+        likeLocks.run(() -> writeLikeChanges(changes), changes.stream().mapToLong(LikeChange::filmId).toArray());
+    }
 
-        film.setGenres(new HashSet<>(genres));
+    private void writeLikeChanges(Collection<LikeChange> changes) {
+        List<LikeChange> added = changes.stream().filter(LikeChange::liked).toList();
+        List<LikeChange> removed = changes.stream().filter(change -> !change.liked()).toList();
+
+        // Счётчики меняются только для строк, которые действительно вставлены или удалены
+        Map<Long, Long> deltas = new HashMap<>();
+        List<LikeChange> applied = new ArrayList<>();
+        collectDeltas(deltas, applied, added, 1, jdbcTemplate.batchUpdate(INSERT_LIKE_SQL, added, LIKE_BATCH_SIZE,
+                (ps, change) -> {
+                    ps.setLong(1, change.userId());
+                    ps.setLong(2, change.filmId());
+                }));
+        collectDeltas(deltas, applied, removed, -1, jdbcTemplate.batchUpdate(DELETE_LIKE_SQL, removed, LIKE_BATCH_SIZE,
+                (ps, change) -> {
+                    ps.setLong(1, change.filmId());
+                    ps.setLong(2, change.userId());
+                }));
+
+        jdbcTemplate.batchUpdate("UPDATE films SET likes_count = likes_count + ? WHERE id = ?",
+                new ArrayList<>(deltas.entrySet()), LIKE_BATCH_SIZE,
+                (ps, delta) -> {
+                    ps.setLong(1, delta.getValue());
+                    ps.setLong(2, delta.getKey());
+                });
+        afterCommit(() -> {
+            deltas.forEach(rankings::add);
+            applied.forEach(change -> {
+                if (change.liked()) {
+                    likeMatrix.add(change.filmId(), change.userId());
+                } else {
+                    likeMatrix.remove(change.filmId(), change.userId());
+                }
+            });
+        });
     }
 
-    private void loadLikes(Film film) {
-        String sql = "SELECT user_id FROM likes WHERE film_id = ?";
-        List<Long> likes = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getLong("user_id"), film.getId());
-        film.setLikedUserIds(new HashSet<>(likes));
+    // Заодно собирает применённые изменения для матрицы лайков
+    private static void collectDeltas(Map<Long, Long> deltas, List<LikeChange> applied, List<LikeChange> changes,
+                                      long delta, int[][] updateCounts) {
+        int index = 0;
+        for (int[] batch : updateCounts) {
+            for (int count : batch) {
+                if (count > 0) {
+                    LikeChange change = changes.get(index);
+                    deltas.merge(change.filmId(), delta, Long::sum);
+                    applied.add(change);
+                }
+                index++;
+            }
+        }
     }
 
-    public void addLike(long filmId, long userId) {
-        String sql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, filmId, userId);
+    // Рейтинги, матрица лайков и поисковый индекс меняются только после фиксации транзакции,
+    // чтобы откат не оставил в них фильмов и лайков, которых нет в базе. Вне транзакции изменение применяется сразу
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
-    public void removeLike(long filmId, long userId) {
-        String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-        jdbcTemplate.update(sql, filmId, userId);
+    // Вызывается только когда изменение лайка не затронуло ни одной строки,
+    // чтобы отличить отсутствующий фильм или пользователя от повторного запроса
+    private void requireFilmAndUser(long filmId, long userId) {
+        if (!existsById(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users WHERE id = ?", Integer.class, userId);
+        if (count == null || count == 0) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
     }
 
-    public List<Film> getPopularFilms(int count) {
-        String sql = "SELECT f.*, COUNT(l.user_id) as likes_count "
-                + "FROM films f "
-                + "LEFT JOIN likes l ON f.id = l.film_id "
-                + "GROUP BY f.id "
-                + "ORDER BY likes_count DESC "
-                + "LIMIT ?";
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return findByIds(rankings.top(count, genreId, year));
+    }
+
+    @Override
+    public List<Film> search(String query, Set<SearchField> by, int count) {
+        return findByIds(Arrays.stream(searchIndex.search(query, by, count, rankings::getLikes)).boxed().toList());
+    }
 
-        List<Film> films = jdbcTemplate.query(sql, filmMapper, count);
-        films.forEach(this::loadAdditionalData);
+    @Override
+    public List<Film> getRecommendations(long userId, int count) {
+        return findByIds(Arrays.stream(likeMatrix.recommend(userId, count)).boxed().toList());
+    }
+
+    // Загружает фильмы с указанными id, сохраняя порядок списка
+    private List<Film> findByIds(List<Long> ids) {
+        List<Film> films = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, ids.size()));
+            String sql = "SELECT f.* FROM films f WHERE f.id IN (" + placeholders(batch.size()) + ")";
+            films.addAll(jdbcTemplate.query(sql, filmMapper, batch.toArray()));
+        }
+
+        Map<Long, Integer> positions = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            positions.put(ids.get(i), i);
+        }
+        films.sort(Comparator.comparingInt(film -> positions.get(film.getId())));
+
+        loadAdditionalData(films);
         return films;
     }
+
+    @FunctionalInterface
+    private interface GroupConsumer {
+        void accept(long key, long[] sortedValues);
+    }
 }
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Рейтинг фильмов по числу лайков. Счётчики хранятся в памяти и обновляются
+// при каждом лайке, поэтому выборка топ-N не требует агрегации таблицы likes
+public class FilmLeaderboard {
+    private static final Comparator<Entry> RANKING_ORDER = Comparator
+            .comparingLong(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final NavigableSet<Entry> ranking = new ConcurrentSkipListSet<>(RANKING_ORDER);
+
+    public void put(long filmId, long likes) {
+        entries.compute(filmId, (id, old) -> replace(old, new Entry(id, likes)));
+    }
+
+    public void add(long filmId, long delta) {
+        entries.compute(filmId, (id, old) ->
+                replace(old, new Entry(id, Math.max(0, (old == null ? 0 : old.likes()) + delta))));
+    }
+
+    public void remove(long filmId) {
+        Entry old = entries.remove(filmId);
+        if (old != null) {
+            ranking.remove(old);
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+        ranking.clear();
+    }
+
+    public long getLikes(long filmId) {
+        Entry entry = entries.get(filmId);
+        return entry == null ? 0 : entry.likes();
+    }
+
+    public List<Long> top(int count) {
+        List<Long> result = new ArrayList<>(Math.max(0, Math.min(count, entries.size())));
+        // Во время обновления фильм может кратковременно встречаться в рейтинге дважды
+        Set<Long> seen = new HashSet<>();
+        for (Entry entry : ranking) {
+            if (result.size() >= count) {
+                break;
+            }
+            if (seen.add(entry.filmId())) {
+                result.add(entry.filmId());
+            }
+        }
+        return result;
+    }
+
+    // Новая запись добавляется раньше удаления старой, чтобы читатели не теряли фильм из рейтинга
+    private Entry replace(Entry old, Entry updated) {
+        ranking.add(updated);
+        if (old != null && !old.equals(updated)) {
+            ranking.remove(old);
+        }
+        return updated;
+    }
+
+    private record Entry(long filmId, long likes) {
+    }
+}
@@ -0,0 +1,102 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.model.GenreSet;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Рейтинги популярности для /films/popular с фильтрами. Кроме общего рейтинга ведутся отдельные
+// рейтинги для каждого жанра, года выпуска и пары жанр-год, поэтому любой фильтрованный топ-N
+// читается из готового рейтинга без агрегации likes и без просмотра неподходящих фильмов
+public class FilmRankings {
+    private final FilmLeaderboard all = new FilmLeaderboard();
+    private final Map<Key, FilmLeaderboard> filtered = new ConcurrentHashMap<>();
+    // Жанры и год каждого фильма: по ним лайк попадает во все нужные рейтинги
+    private final Map<Long, Attributes> attributes = new ConcurrentHashMap<>();
+
+    // Добавляет фильм или переносит его между рейтингами после смены жанров или даты выпуска.
+    // Все изменения одного фильма выполняются под блокировкой его записи в attributes
+    public void put(long filmId, GenreSet genres, LocalDate releaseDate, long likes) {
+        replace(filmId, toAttributes(genres, releaseDate), likes);
+    }
+
+    // Переносит фильм в рейтинги по новым жанрам и году, сохраняя накопленные лайки
+    public void update(long filmId, GenreSet genres, LocalDate releaseDate) {
+        replace(filmId, toAttributes(genres, releaseDate), null);
+    }
+
+    public void add(long filmId, long delta) {
+        attributes.computeIfPresent(filmId, (id, current) -> {
+            all.add(id, delta);
+            forEachKey(current, key -> filtered.get(key).add(id, delta));
+            return current;
+        });
+    }
+
+    public long getLikes(long filmId) {
+        return all.getLikes(filmId);
+    }
+
+    public List<Long> top(int count, Integer genreId, Integer year) {
+        if (genreId == null && year == null) {
+            return all.top(count);
+        }
+        FilmLeaderboard leaderboard = filtered.get(new Key(genreId, year));
+        return leaderboard == null ? List.of() : leaderboard.top(count);
+    }
+
+    public void clear() {
+        attributes.clear();
+        filtered.clear();
+        all.clear();
+    }
+
+    // likes == null — сохранить текущее число лайков. Оно читается под той же блокировкой записи
+    // фильма, что и в add, поэтому лайк, пришедший во время переноса, не теряется
+    private void replace(long filmId, Attributes updated, Long likes) {
+        attributes.compute(filmId, (id, old) -> {
+            long current = likes != null ? likes : all.getLikes(id);
+            if (old != null) {
+                forEachKey(old, key -> removeFrom(key, id));
+            }
+            all.put(id, current);
+            forEachKey(updated, key -> filtered.computeIfAbsent(key, k -> new FilmLeaderboard()).put(id, current));
+            return updated;
+        });
+    }
+
+    private static Attributes toAttributes(GenreSet genres, LocalDate releaseDate) {
+        return new Attributes(genres != null ? genres.ids() : new int[0], releaseDate != null ? releaseDate.getYear() : null);
+    }
+
+    // Опустевшие рейтинги не удаляются: ключей немного (жанры x годы), зато фильм,
+    // параллельно добавляемый в тот же рейтинг, не попадёт в уже выброшенный объект
+    private void removeFrom(Key key, long filmId) {
+        FilmLeaderboard leaderboard = filtered.get(key);
+        if (leaderboard != null) {
+            leaderboard.remove(filmId);
+        }
+    }
+
+    // Фильм входит в рейтинги каждого своего жанра, своего года и каждой пары жанр-год
+    private static void forEachKey(Attributes film, Consumer<Key> action) {
+        for (int genreId : film.genreIds()) {
+            action.accept(new Key(genreId, null));
+            if (film.year() != null) {
+                action.accept(new Key(genreId, film.year()));
+            }
+        }
+        if (film.year() != null) {
+            action.accept(new Key(null, film.year()));
+        }
+    }
+
+    private record Key(Integer genreId, Integer year) {
+    }
+
+    private record Attributes(int[] genreIds, Integer year) {
+    }
+}
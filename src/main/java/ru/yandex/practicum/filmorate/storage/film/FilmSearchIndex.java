@@ -0,0 +1,423 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.storage.SortedLongArrays;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.LongUnaryOperator;
+
+// Инвертированный индекс для поиска фильмов по словам названия и описания.
+// Для каждого поля слово отображается в отсортированный массив id фильмов, а словарь хранится
+// в упорядоченной карте, поэтому поиск по началу слова — это выборка диапазона ключей.
+// Слова приводятся к нижнему регистру, «ё» заменяется на «е»
+public class FilmSearchIndex {
+    // Совпадение в названии важнее совпадения в описании
+    private static final int TITLE_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    private final Map<SearchField, NavigableMap<String, long[]>> postings = new EnumMap<>(SearchField.class);
+    // Слова каждого фильма по полям: при обновлении фильм убирается из старых списков
+    private final Map<Long, Map<SearchField, Set<String>>> tokensByFilm = new ConcurrentHashMap<>();
+
+    public FilmSearchIndex() {
+        for (SearchField field : SearchField.values()) {
+            postings.put(field, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public void put(long filmId, String title, String description) {
+        Map<SearchField, Set<String>> updated = new EnumMap<>(SearchField.class);
+        updated.put(SearchField.TITLE, tokenize(title));
+        updated.put(SearchField.DESCRIPTION, tokenize(description));
+
+        tokensByFilm.compute(filmId, (id, old) -> {
+            for (SearchField field : SearchField.values()) {
+                Set<String> oldTokens = old != null ? old.get(field) : Set.of();
+                Set<String> newTokens = updated.get(field);
+                NavigableMap<String, long[]> index = postings.get(field);
+                for (String token : oldTokens) {
+                    if (!newTokens.contains(token)) {
+                        index.computeIfPresent(token, (t, ids) -> {
+                            long[] remaining = SortedLongArrays.remove(ids, id);
+                            return remaining.length == 0 ? null : remaining;
+                        });
+                    }
+                }
+                for (String token : newTokens) {
+                    if (!oldTokens.contains(token)) {
+                        index.compute(token, (t, ids) ->
+                                SortedLongArrays.insert(ids == null ? SortedLongArrays.EMPTY : ids, id));
+                    }
+                }
+            }
+            return updated;
+        });
+    }
+
+    // Добавление многих фильмов сразу: id новых фильмов копятся по словам в растущих буферах,
+    // и список каждого слова сливается с опубликованным один раз. Поштучный put копировал бы
+    // список частого слова на каждый фильм, и построение индекса было бы квадратичным.
+    // Фильмы, которые уже есть в индексе или встретились повторно, добавляются через put
+    public void bulkPut(Consumer<FilmSink> films) {
+        Map<SearchField, Map<String, LongBuffer>> added = new EnumMap<>(SearchField.class);
+        for (SearchField field : SearchField.values()) {
+            added.put(field, new HashMap<>());
+        }
+        Map<Long, Map<SearchField, Set<String>>> addedTokens = new HashMap<>();
+        List<Runnable> updates = new ArrayList<>();
+
+        films.accept((filmId, title, description) -> {
+            if (tokensByFilm.containsKey(filmId) || addedTokens.containsKey(filmId)) {
+                updates.add(() -> put(filmId, title, description));
+                return;
+            }
+            Map<SearchField, Set<String>> tokens = new EnumMap<>(SearchField.class);
+            tokens.put(SearchField.TITLE, tokenize(title));
+            tokens.put(SearchField.DESCRIPTION, tokenize(description));
+            addedTokens.put(filmId, tokens);
+            tokens.forEach((field, words) -> {
+                Map<String, LongBuffer> buffers = added.get(field);
+                for (String word : words) {
+                    buffers.computeIfAbsent(word, w -> new LongBuffer()).add(filmId);
+                }
+            });
+        });
+
+        tokensByFilm.putAll(addedTokens);
+        added.forEach((field, buffers) -> {
+            NavigableMap<String, long[]> index = postings.get(field);
+            buffers.forEach((word, buffer) -> {
+                long[] ids = buffer.toSortedArray();
+                index.merge(word, ids, FilmSearchIndex::union);
+            });
+        });
+        updates.forEach(Runnable::run);
+    }
+
+    // Каждое слово запроса ищется как начало слова в выбранных полях, фильм должен подойти
+    // под все слова запроса. Кандидаты берутся из самого редкого слова, остальные слова только
+    // проверяются двоичным поиском. Вес фильма — сумма весов полей, где нашлись слова, умноженная
+    // на число лайков плюс один, чтобы фильмы без лайков тоже упорядочивались по релевантности
+    public long[] search(String query, Set<SearchField> fields, int limit, LongUnaryOperator likes) {
+        Set<String> words = tokenize(query);
+        if (words.isEmpty() || fields.isEmpty()) {
+            return SortedLongArrays.EMPTY;
+        }
+
+        WordMatch[] matches = new WordMatch[words.size()];
+        int w = 0;
+        for (String word : words) {
+            matches[w++] = new WordMatch(
+                    fields.contains(SearchField.TITLE) ? prefixMatches(SearchField.TITLE, word) : PrefixMatch.NONE,
+                    fields.contains(SearchField.DESCRIPTION)
+                            ? prefixMatches(SearchField.DESCRIPTION, word) : PrefixMatch.NONE);
+        }
+        Arrays.sort(matches, Comparator.comparingLong(WordMatch::size));
+
+        // Кандидаты — слияние списков самого редкого слова по двум полям; при слиянии сразу
+        // известно, в каких полях оно нашлось, и двоичный поиск нужен только для остальных слов
+        long[] titleIds = matches[0].title().ids();
+        long[] descriptionIds = matches[0].description().ids();
+        TopFilms top = new TopFilms(limit);
+        int i = 0;
+        int j = 0;
+        while (i < titleIds.length || j < descriptionIds.length) {
+            long filmId;
+            long relevance;
+            if (j == descriptionIds.length || i < titleIds.length && titleIds[i] < descriptionIds[j]) {
+                filmId = titleIds[i++];
+                relevance = TITLE_WEIGHT;
+            } else if (i == titleIds.length || descriptionIds[j] < titleIds[i]) {
+                filmId = descriptionIds[j++];
+                relevance = DESCRIPTION_WEIGHT;
+            } else {
+                filmId = titleIds[i++];
+                j++;
+                relevance = TITLE_WEIGHT + DESCRIPTION_WEIGHT;
+            }
+
+            for (int m = 1; m < matches.length && relevance > 0; m++) {
+                int weight = (matches[m].title().contains(filmId) ? TITLE_WEIGHT : 0)
+                        + (matches[m].description().contains(filmId) ? DESCRIPTION_WEIGHT : 0);
+                relevance = weight == 0 ? 0 : relevance + weight;
+            }
+            if (relevance > 0) {
+                top.offer(filmId, relevance * (likes.applyAsLong(filmId) + 1));
+            }
+        }
+        return top.toArray();
+    }
+
+    public void clear() {
+        tokensByFilm.clear();
+        postings.values().forEach(Map::clear);
+    }
+
+    // Слова из букв и цифр любого алфавита, в нижнем регистре и с «ё», заменённой на «е»
+    static Set<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Set.of();
+        }
+
+        Set<String> tokens = new LinkedHashSet<>();
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private PrefixMatch prefixMatches(SearchField field, String prefix) {
+        return new PrefixMatch(List.copyOf(
+                postings.get(field).subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()));
+    }
+
+    // Слияние двух отсортированных массивов без повторов
+    private static long[] union(long[] first, long[] second) {
+        if (first.length == 0) {
+            return second;
+        }
+        if (second.length == 0) {
+            return first;
+        }
+
+        long[] result = new long[first.length + second.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < first.length || j < second.length) {
+            if (j == second.length || i < first.length && first[i] < second[j]) {
+                result[size++] = first[i++];
+            } else if (i == first.length || second[j] < first[i]) {
+                result[size++] = second[j++];
+            } else {
+                result[size++] = first[i++];
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // До limit фильмов с наибольшим весом, при равенстве — с меньшим id. Отбор идёт через кучу
+    // на limit позиций, как в LongIntCounter.top, поэтому частое слово не сортирует всех кандидатов
+    private static final class TopFilms {
+        private final long[] ids;
+        private final long[] scores;
+        private int size;
+
+        TopFilms(int limit) {
+            ids = new long[Math.max(0, limit)];
+            scores = new long[ids.length];
+        }
+
+        void offer(long filmId, long score) {
+            if (size < ids.length) {
+                ids[size] = filmId;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (size > 0 && ranksHigher(score, filmId, scores[0], ids[0])) {
+                ids[0] = filmId;
+                scores[0] = score;
+                siftDown(size);
+            }
+        }
+
+        // В корне кучи худший из отобранных, поэтому результат заполняется с конца
+        long[] toArray() {
+            long[] result = new long[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = ids[0];
+                swap(0, i);
+                siftDown(i);
+            }
+            return result;
+        }
+
+        private static boolean ranksHigher(long score, long filmId, long otherScore, long otherId) {
+            return score > otherScore || score == otherScore && filmId < otherId;
+        }
+
+        private boolean ranksHigher(int i, int j) {
+            return ranksHigher(scores[i], ids[i], scores[j], ids[j]);
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (!ranksHigher(parent, index)) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int heapSize) {
+            int index = 0;
+            while (true) {
+                int lowest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < heapSize && ranksHigher(lowest, left)) {
+                    lowest = left;
+                }
+                if (right < heapSize && ranksHigher(lowest, right)) {
+                    lowest = right;
+                }
+                if (lowest == index) {
+                    return;
+                }
+                swap(lowest, index);
+                index = lowest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            long id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+            long score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+        }
+    }
+
+    @FunctionalInterface
+    public interface FilmSink {
+        void put(long filmId, String title, String description);
+    }
+
+    // Растущий буфер id без упаковки; при чтении из базы в порядке id уже отсортирован
+    private static final class LongBuffer {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+
+    // Списки фильмов всех слов словаря, начинающихся с одного слова запроса, в одном поле
+    private static final class PrefixMatch {
+        static final PrefixMatch NONE = new PrefixMatch(List.of());
+        // При большем числе списков проверка вхождения идёт по их объединению
+        private static final int MAX_LISTS_TO_PROBE = 8;
+
+        private final List<long[]> lists;
+        private final long size;
+        private long[] merged;
+
+        PrefixMatch(List<long[]> lists) {
+            this.lists = lists;
+            this.size = lists.stream().mapToLong(ids -> ids.length).sum();
+        }
+
+        long size() {
+            return size;
+        }
+
+        boolean contains(long filmId) {
+            if (lists.size() > MAX_LISTS_TO_PROBE) {
+                return Arrays.binarySearch(ids(), filmId) >= 0;
+            }
+            for (long[] ids : lists) {
+                if (Arrays.binarySearch(ids, filmId) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Объединение всех списков; единственный список возвращается без копирования
+        long[] ids() {
+            if (merged == null) {
+                merged = lists.size() == 1 ? lists.get(0) : mergeAll(lists);
+            }
+            return merged;
+        }
+
+        // Id фильмов выдаются подряд, поэтому объединение многих коротких списков (префикс из одной
+        // буквы или цифры) собирается в битовую карту за один проход без сортировки.
+        // Для разреженных id, где карта вышла бы больше самих списков, остаётся сортировка
+        private static long[] mergeAll(List<long[]> lists) {
+            int total = 0;
+            long maxId = 0;
+            for (long[] ids : lists) {
+                total += ids.length;
+                if (ids.length > 0) {
+                    maxId = Math.max(maxId, ids[ids.length - 1]);
+                }
+            }
+            if (maxId / Long.SIZE > total * 4L) {
+                return sortDistinct(lists, total);
+            }
+
+            long[] bits = new long[(int) (maxId / Long.SIZE) + 1];
+            for (long[] ids : lists) {
+                for (long id : ids) {
+                    bits[(int) (id >>> 6)] |= 1L << id;
+                }
+            }
+            long[] all = new long[total];
+            int size = 0;
+            for (int word = 0; word < bits.length; word++) {
+                for (long rest = bits[word]; rest != 0; rest &= rest - 1) {
+                    all[size++] = (long) word * Long.SIZE + Long.numberOfTrailingZeros(rest);
+                }
+            }
+            return size == total ? all : Arrays.copyOf(all, size);
+        }
+
+        private static long[] sortDistinct(List<long[]> lists, int total) {
+            long[] all = new long[total];
+            int size = 0;
+            for (long[] ids : lists) {
+                System.arraycopy(ids, 0, all, size, ids.length);
+                size += ids.length;
+            }
+
+            Arrays.sort(all);
+            int distinct = 0;
+            for (int i = 0; i < size; i++) {
+                if (distinct == 0 || all[i] != all[distinct - 1]) {
+                    all[distinct++] = all[i];
+                }
+            }
+            return Arrays.copyOf(all, distinct);
+        }
+    }
+
+    private record WordMatch(PrefixMatch title, PrefixMatch description) {
+        long size() {
+            return title.size() + description.size();
+        }
+    }
+}
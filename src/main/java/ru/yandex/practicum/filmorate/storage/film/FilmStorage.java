@@ -1,17 +1,56 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Film create(Film film);
 
+    // Сохраняет список фильмов одной пачкой и проставляет им сгенерированные id
+    List<Film> createAll(List<Film> films);
+
     Film update(Film film);
 
     List<Film> findAll();
 
+    // Страница фильмов с id больше afterId, упорядоченная по id
+    List<Film> findPage(long afterId, int limit);
+
+    // Последовательно передаёт все фильмы в порядке id, не собирая их в один список
+    void streamAll(Consumer<Film> consumer);
+
     Optional<Film> findById(Long id);
 
     boolean existsById(Long id);
+
+    // Добавляет лайк; повторный лайк ничего не меняет.
+    // Если фильм или пользователь не существует, выбрасывается NotFoundException
+    void addLike(long filmId, long userId);
+
+    void removeLike(long filmId, long userId);
+
+    // Страница id пользователей, лайкнувших фильм, по возрастанию id начиная после afterUserId
+    long[] getLikes(long filmId, long afterUserId, int limit);
+
+    // Фильмы, в выбранных полях которых есть слова, начинающиеся со всех слов запроса,
+    // от самых релевантных и популярных
+    List<Film> search(String query, Set<SearchField> by, int count);
+
+    // Фильмы, которые лайкнули пользователи с похожими вкусами, а сам пользователь ещё нет
+    List<Film> getRecommendations(long userId, int count);
+
+    // Применяет пачку изменений лайков. В пачке не более одного изменения на пару фильм-пользователь,
+    // изменения для несуществующих фильмов и пользователей пропускаются
+    void applyLikeChanges(Collection<LikeChange> changes);
+
+    // Самые популярные фильмы; genreId и year необязательны и сужают выборку
+    List<Film> getPopularFilms(int count, Integer genreId, Integer year);
+
+    default List<Film> getPopularFilms(int count) {
+        return getPopularFilms(count, null, null);
+    }
 }
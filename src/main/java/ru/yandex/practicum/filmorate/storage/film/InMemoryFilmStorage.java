@@ -1,41 +1,186 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.MpaDao;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.GenreSet;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
+// Потокобезопасное хранилище фильмов в памяти для профиля in-memory.
+// Наружу отдаются только копии, чтобы вызывающий код не мог изменить состояние хранилища.
+// Лайки хранятся в матрице LikeMatrix отсортированными массивами id, как друзья в FriendIndex
 @Component
+@Profile("in-memory")
+@RequiredArgsConstructor
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>();
+    private final LikeMatrix likeMatrix = new LikeMatrix();
     private final AtomicLong nextId = new AtomicLong(1);
+    private final FilmRankings rankings = new FilmRankings();
+    private final FilmSearchIndex searchIndex = new FilmSearchIndex();
+
+    private final UserStorage userStorage;
+    private final MpaDao mpaDao;
 
     @Override
     public Film create(Film film) {
         film.setId(nextId.getAndIncrement());
-        films.put(film.getId(), film);
+        films.put(film.getId(), copyOf(film));
+        rankings.put(film.getId(), film.getGenres(), film.getReleaseDate(), 0);
+        searchIndex.put(film.getId(), film.getName(), film.getDescription());
         return film;
     }
 
+    @Override
+    public List<Film> createAll(List<Film> films) {
+        films.forEach(this::create);
+        return films;
+    }
+
     @Override
     public Film update(Film film) {
-        films.put(film.getId(), film);
+        films.put(film.getId(), copyOf(film));
+        rankings.update(film.getId(), film.getGenres(), film.getReleaseDate());
+        searchIndex.put(film.getId(), film.getName(), film.getDescription());
+        film.setLikesCount(rankings.getLikes(film.getId()));
         return film;
     }
 
     @Override
     public List<Film> findAll() {
-        return new ArrayList<>(films.values());
+        return films.values().stream()
+                .map(this::hydrate)
+                .toList();
+    }
+
+    @Override
+    public List<Film> findPage(long afterId, int limit) {
+        return films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(this::hydrate)
+                .toList();
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        films.values().stream()
+                .map(this::hydrate)
+                .forEach(consumer);
     }
 
     @Override
     public Optional<Film> findById(Long id) {
-        return Optional.ofNullable(films.get(id));
+        return Optional.ofNullable(films.get(id)).map(this::hydrate);
     }
 
     @Override
     public boolean existsById(Long id) {
         return films.containsKey(id);
     }
+
+    @Override
+    public void addLike(long filmId, long userId) {
+        requireFilmAndUser(filmId, userId);
+        if (updateLikes(filmId, userId, true)) {
+            rankings.add(filmId, 1);
+        }
+    }
+
+    @Override
+    public void removeLike(long filmId, long userId) {
+        requireFilmAndUser(filmId, userId);
+        if (updateLikes(filmId, userId, false)) {
+            rankings.add(filmId, -1);
+        }
+    }
+
+    @Override
+    public long[] getLikes(long filmId, long afterUserId, int limit) {
+        return likeMatrix.getUsers(filmId, afterUserId, limit);
+    }
+
+    @Override
+    public void applyLikeChanges(Collection<LikeChange> changes) {
+        for (LikeChange change : changes) {
+            if (!films.containsKey(change.filmId()) || !userStorage.existsById(change.userId())
+                    || !updateLikes(change.filmId(), change.userId(), change.liked())) {
+                continue;
+            }
+            rankings.add(change.filmId(), change.liked() ? 1 : -1);
+        }
+    }
+
+    @Override
+    public List<Film> getPopularFilms(int count, Integer genreId, Integer year) {
+        return rankings.top(count, genreId, year).stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .map(this::hydrate)
+                .toList();
+    }
+
+    // Возвращает true, если набор лайков изменился
+    private boolean updateLikes(long filmId, long userId, boolean liked) {
+        return liked ? likeMatrix.add(filmId, userId) : likeMatrix.remove(filmId, userId);
+    }
+
+    @Override
+    public List<Film> search(String query, Set<SearchField> by, int count) {
+        return Arrays.stream(searchIndex.search(query, by, count, rankings::getLikes))
+                .mapToObj(films::get)
+                .filter(Objects::nonNull)
+                .map(this::hydrate)
+                .toList();
+    }
+
+    @Override
+    public List<Film> getRecommendations(long userId, int count) {
+        return Arrays.stream(likeMatrix.recommend(userId, count))
+                .mapToObj(films::get)
+                .filter(Objects::nonNull)
+                .map(this::hydrate)
+                .toList();
+    }
+
+    private void requireFilmAndUser(long filmId, long userId) {
+        if (!films.containsKey(filmId)) {
+            throw new NotFoundException("Фильм с ID " + filmId + " не найден");
+        }
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+        }
+    }
+
+    // Копия фильма с актуальным числом лайков и названием MPA из справочника.
+    // Названия жанров подставляет GenreSetSerializer при записи ответа
+    private Film hydrate(Film stored) {
+        Film film = copyOf(stored);
+        if (film.getMpa() != null) {
+            mpaDao.findById(film.getMpa().getId()).ifPresent(film::setMpa);
+        }
+
+        film.setLikesCount(rankings.getLikes(film.getId()));
+        return film;
+    }
+
+    private static Film copyOf(Film source) {
+        Film film = new Film();
+        film.setId(source.getId());
+        film.setName(source.getName());
+        film.setDescription(source.getDescription());
+        film.setReleaseDate(source.getReleaseDate());
+        film.setDuration(source.getDuration());
+        film.setMpa(source.getMpa());
+        film.setGenres(source.getGenres() != null ? source.getGenres().copy() : new GenreSet());
+        return film;
+    }
 }
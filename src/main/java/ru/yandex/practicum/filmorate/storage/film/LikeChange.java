@@ -0,0 +1,5 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+// Изменение лайка: liked = true — пользователь поставил лайк фильму, false — убрал
+public record LikeChange(long filmId, long userId, boolean liked) {
+}
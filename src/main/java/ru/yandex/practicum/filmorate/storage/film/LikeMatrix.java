@@ -0,0 +1,137 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import ru.yandex.practicum.filmorate.storage.SortedLongArrays;
+import ru.yandex.practicum.filmorate.storage.SortedLongBlocks;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+import java.util.stream.IntStream;
+
+// Разреженная матрица пользователь x фильм по таблице likes: для каждого пользователя хранится
+// отсортированный набор id лайкнутых фильмов, для каждого фильма — набор id лайкнувших.
+// Наборы не изменяются после публикации, поэтому рекомендации считаются без блокировок,
+// а блочное хранение ограничивает копирование при лайке фильма с огромным числом лайков
+public class LikeMatrix {
+    // Сколько самых похожих пользователей участвует в рекомендации
+    private static final int NEIGHBOURS = 50;
+    // С какого числа просматриваемых элементов подсчёт распределяется по ядрам
+    private static final int PARALLEL_THRESHOLD = 50_000;
+
+    private final Map<Long, SortedLongBlocks> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Long, SortedLongBlocks> usersByFilm = new ConcurrentHashMap<>();
+
+    public void putUser(long userId, long[] sortedFilmIds) {
+        filmsByUser.put(userId, SortedLongBlocks.of(sortedFilmIds));
+    }
+
+    public void putFilm(long filmId, long[] sortedUserIds) {
+        usersByFilm.put(filmId, SortedLongBlocks.of(sortedUserIds));
+    }
+
+    // Строка пользователя обновляется внутри compute по фильму: изменения одного фильма
+    // упорядочены, а блокировки берутся всегда в одном порядке, сначала фильм, потом пользователь.
+    // Возвращает true, если лайка ещё не было
+    public boolean add(long filmId, long userId) {
+        boolean[] changed = {false};
+        usersByFilm.compute(filmId, (id, users) -> {
+            SortedLongBlocks current = users == null ? SortedLongBlocks.EMPTY : users;
+            SortedLongBlocks updated = current.insert(userId);
+            if (updated != current) {
+                filmsByUser.compute(userId, (user, films) ->
+                        (films == null ? SortedLongBlocks.EMPTY : films).insert(filmId));
+                changed[0] = true;
+            }
+            return updated;
+        });
+        return changed[0];
+    }
+
+    // Возвращает true, если лайк был
+    public boolean remove(long filmId, long userId) {
+        boolean[] changed = {false};
+        usersByFilm.computeIfPresent(filmId, (id, current) -> {
+            SortedLongBlocks updated = current.remove(userId);
+            if (updated != current) {
+                filmsByUser.computeIfPresent(userId, (user, films) -> {
+                    SortedLongBlocks remaining = films.remove(filmId);
+                    return remaining.size() == 0 ? null : remaining;
+                });
+                changed[0] = true;
+            }
+            return updated.size() == 0 ? null : updated;
+        });
+        return changed[0];
+    }
+
+    // До limit id пользователей, лайкнувших фильм, с id больше afterUserId
+    public long[] getUsers(long filmId, long afterUserId, int limit) {
+        return users(filmId).page(afterUserId, limit);
+    }
+
+    private SortedLongBlocks users(long filmId) {
+        return usersByFilm.getOrDefault(filmId, SortedLongBlocks.EMPTY);
+    }
+
+    private SortedLongBlocks films(long userId) {
+        return filmsByUser.getOrDefault(userId, SortedLongBlocks.EMPTY);
+    }
+
+    // Коллаборативная фильтрация по пользователям. Соседи — пользователи с наибольшим числом
+    // общих лайков; фильм получает сумму пересечений соседей, которые его лайкнули,
+    // а уже лайкнутые пользователем фильмы пропускаются
+    public long[] recommend(long userId, int limit) {
+        SortedLongBlocks liked = films(userId);
+        if (liked.size() == 0) {
+            return SortedLongArrays.EMPTY;
+        }
+
+        long[] likedIds = liked.toArray();
+        SortedLongBlocks[] likersOfLiked = new SortedLongBlocks[likedIds.length];
+        for (int i = 0; i < likedIds.length; i++) {
+            likersOfLiked[i] = users(likedIds[i]);
+        }
+        LongIntCounter overlaps = accumulate(likersOfLiked, null, otherId -> otherId == userId);
+        long[] neighbours = overlaps.top(NEIGHBOURS);
+
+        SortedLongBlocks[] neighbourFilms = new SortedLongBlocks[neighbours.length];
+        int[] weights = new int[neighbours.length];
+        for (int i = 0; i < neighbours.length; i++) {
+            neighbourFilms[i] = films(neighbours[i]);
+            weights[i] = overlaps.get(neighbours[i]);
+        }
+        LongIntCounter scores = accumulate(neighbourFilms, weights,
+                filmId -> Arrays.binarySearch(likedIds, filmId) >= 0);
+        return scores.top(limit);
+    }
+
+    public void clear() {
+        filmsByUser.clear();
+        usersByFilm.clear();
+    }
+
+    // Суммирует веса строк по id, пропуская исключённые id. На больших объёмах строки делятся
+    // между потоками общего пула, у каждого потока свой счётчик, затем счётчики сливаются
+    private static LongIntCounter accumulate(SortedLongBlocks[] rows, int[] weights, LongPredicate excluded) {
+        long total = 0;
+        for (SortedLongBlocks row : rows) {
+            total += row.size();
+        }
+
+        IntStream indexes = IntStream.range(0, rows.length);
+        if (total >= PARALLEL_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        return indexes.collect(LongIntCounter::new, (counter, i) -> {
+            int weight = weights != null ? weights[i] : 1;
+            for (int b = 0; b < rows[i].blockCount(); b++) {
+                for (long id : rows[i].block(b)) {
+                    if (!excluded.test(id)) {
+                        counter.add(id, weight);
+                    }
+                }
+            }
+        }, LongIntCounter::addAll);
+    }
+}
@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+// Счётчик long -> int на открытой адресации без упаковки ключей и значений.
+// Значения только положительные, поэтому нулевое значение означает пустую ячейку
+final class LongIntCounter {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    LongIntCounter() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new int[INITIAL_CAPACITY];
+    }
+
+    void add(long key, int delta) {
+        int slot = slot(keys, values, key);
+        if (values[slot] == 0) {
+            keys[slot] = key;
+            if (++size * 2 > keys.length) {
+                values[slot] = delta;
+                grow();
+                return;
+            }
+        }
+        values[slot] += delta;
+    }
+
+    int get(long key) {
+        return values[slot(keys, values, key)];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void addAll(LongIntCounter other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.values[i] != 0) {
+                add(other.keys[i], other.values[i]);
+            }
+        }
+    }
+
+    // До k ключей с наибольшими значениями, при равенстве — с меньшим ключом.
+    // Отбор идёт через кучу на k элементов, поэтому весь счётчик не сортируется
+    long[] top(int k) {
+        int[] heap = new int[Math.min(k, size)];
+        int heapSize = 0;
+        for (int slot = 0; slot < keys.length && heap.length > 0; slot++) {
+            if (values[slot] == 0) {
+                continue;
+            }
+            if (heapSize < heap.length) {
+                heap[heapSize] = slot;
+                siftUp(heap, heapSize++);
+            } else if (ranksHigher(slot, heap[0])) {
+                heap[0] = slot;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        // В корне кучи худший из отобранных, поэтому результат заполняется с конца
+        long[] result = new long[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            result[i] = keys[heap[0]];
+            heap[0] = heap[i];
+            siftDown(heap, i);
+        }
+        return result;
+    }
+
+    private boolean ranksHigher(int slot, int otherSlot) {
+        return values[slot] > values[otherSlot]
+                || values[slot] == values[otherSlot] && keys[slot] < keys[otherSlot];
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksHigher(heap[parent], heap[index])) {
+                return;
+            }
+            swap(heap, parent, index);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int heapSize) {
+        int index = 0;
+        while (true) {
+            int lowest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < heapSize && ranksHigher(heap[lowest], heap[left])) {
+                lowest = left;
+            }
+            if (right < heapSize && ranksHigher(heap[lowest], heap[right])) {
+                lowest = right;
+            }
+            if (lowest == index) {
+                return;
+            }
+            swap(heap, lowest, index);
+            index = lowest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int tmp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = tmp;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != 0) {
+                int slot = slot(keys, values, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    // Линейное пробирование от перемешанного хэша ключа: последовательные id не собираются в кластеры
+    private static int slot(long[] keys, int[] values, long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
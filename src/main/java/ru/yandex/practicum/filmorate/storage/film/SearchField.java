@@ -0,0 +1,7 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+// Поля фильма, по которым работает поиск /films/search
+public enum SearchField {
+    TITLE,
+    DESCRIPTION
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+// Кэш пользователей поверх UserDbStorage. Проверки существования пользователя в сервисах
+// обслуживаются из памяти, а отдельный негативный кэш запоминает несуществующие id,
+// чтобы повторные запросы к ним тоже не доходили до базы
+@Slf4j
+@Primary
+@Repository
+@Profile("!in-memory")
+public class CachingUserStorage implements UserStorage, MeterBinder {
+    private final UserDbStorage userDbStorage;
+    private final Cache<Long, User> users;
+    private final Cache<Long, Boolean> missingIds;
+
+    public CachingUserStorage(UserDbStorage userDbStorage,
+                              @Value("${filmorate.cache.users.maximum-size:100000}") long maximumSize,
+                              @Value("${filmorate.cache.users.missing-ttl:30s}") Duration missingTtl) {
+        this.userDbStorage = userDbStorage;
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        // Пользователь может появиться в базе в обход приложения, поэтому отрицательный ответ живёт недолго
+        this.missingIds = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(missingTtl)
+                .recordStats()
+                .build();
+        log.info("Кэш пользователей включён, максимальный размер: {}", maximumSize);
+    }
+
+    @Override
+    public User create(User user) {
+        User created = userDbStorage.create(user);
+        missingIds.invalidate(created.getId());
+        users.put(created.getId(), copyOf(created));
+        return created;
+    }
+
+    @Override
+    public User update(User user) {
+        User updated = userDbStorage.update(user);
+        users.invalidate(user.getId());
+        return updated;
+    }
+
+    @Override
+    public List<User> findAll() {
+        return userDbStorage.findAll();
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        return userDbStorage.findPage(afterId, limit);
+    }
+
+    // Положительный кэш проверяется первым: если чтение несуществующего id совпало по времени
+    // с созданием пользователя, устаревшая отрицательная запись не скроет нового пользователя
+    @Override
+    public Optional<User> findById(Long id) {
+        User cached = users.getIfPresent(id);
+        if (cached == null && missingIds.getIfPresent(id) != null) {
+            return Optional.empty();
+        }
+        if (cached == null) {
+            cached = users.get(id, key -> userDbStorage.findById(key).orElse(null));
+        }
+        if (cached == null) {
+            missingIds.put(id, Boolean.TRUE);
+            return Optional.empty();
+        }
+        return Optional.of(copyOf(cached));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public void addFriend(long userId, long friendId) {
+        userDbStorage.addFriend(userId, friendId);
+    }
+
+    @Override
+    public void removeFriend(long userId, long friendId) {
+        userDbStorage.removeFriend(userId, friendId);
+    }
+
+    @Override
+    public List<User> getFriends(long userId) {
+        return userDbStorage.getFriends(userId);
+    }
+
+    @Override
+    public List<User> getCommonFriends(long userId, long otherId) {
+        return userDbStorage.getCommonFriends(userId, otherId);
+    }
+
+    public CacheStats stats() {
+        return users.stats();
+    }
+
+    public CacheStats missingStats() {
+        return missingIds.stats();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, users, "users");
+        CaffeineCacheMetrics.monitor(registry, missingIds, "missing-users");
+    }
+
+    private static User copyOf(User source) {
+        User user = new User();
+        user.setId(source.getId());
+        user.setEmail(source.getEmail());
+        user.setLogin(source.getLogin());
+        user.setName(source.getName());
+        user.setBirthday(source.getBirthday());
+        return user;
+    }
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import ru.yandex.practicum.filmorate.storage.SortedLongArrays;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Граф дружбы в памяти: для каждого пользователя хранится отсортированный массив id друзей.
+// Массивы не изменяются после публикации, поэтому читатели работают без блокировок
+public class FriendIndex {
+    private final Map<Long, long[]> friendsByUser = new ConcurrentHashMap<>();
+
+    public void put(long userId, long[] sortedFriendIds) {
+        friendsByUser.put(userId, sortedFriendIds);
+    }
+
+    public void add(long userId, long friendId) {
+        friendsByUser.compute(userId, (id, friends) ->
+                SortedLongArrays.insert(friends == null ? SortedLongArrays.EMPTY : friends, friendId));
+    }
+
+    public void remove(long userId, long friendId) {
+        friendsByUser.computeIfPresent(userId, (id, current) -> {
+            long[] updated = SortedLongArrays.remove(current, friendId);
+            return updated.length == 0 ? null : updated;
+        });
+    }
+
+    public long[] getFriends(long userId) {
+        return friendsByUser.getOrDefault(userId, SortedLongArrays.EMPTY);
+    }
+
+    // Пересечение двух отсортированных массивов слиянием за O(n + m)
+    public long[] getCommonFriends(long userId, long otherId) {
+        long[] first = getFriends(userId);
+        long[] second = getFriends(otherId);
+        long[] common = new long[Math.min(first.length, second.length)];
+
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                common[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(common, size);
+    }
+
+    public void clear() {
+        friendsByUser.clear();
+    }
+}
@@ -1,40 +1,106 @@
 package ru.yandex.practicum.filmorate.storage.user;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
 
+// Потокобезопасное хранилище пользователей в памяти для профиля in-memory.
+// Наружу отдаются только копии, чтобы вызывающий код не мог изменить состояние хранилища
 @Component
+@Profile("in-memory")
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
+    private final ConcurrentNavigableMap<Long, User> users = new ConcurrentSkipListMap<>();
+    private final FriendIndex friendIndex = new FriendIndex();
     private final AtomicLong nextId = new AtomicLong(1);
 
     @Override
     public User create(User user) {
         user.setId(nextId.getAndIncrement());
-        users.put(user.getId(), user);
+        users.put(user.getId(), copyOf(user));
         return user;
     }
 
     @Override
     public User update(User user) {
-        users.put(user.getId(), user);
+        users.put(user.getId(), copyOf(user));
         return user;
     }
 
     @Override
     public List<User> findAll() {
-        return new ArrayList<>(users.values());
+        return users.values().stream()
+                .map(InMemoryUserStorage::copyOf)
+                .toList();
+    }
+
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        return users.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(InMemoryUserStorage::copyOf)
+                .toList();
     }
 
     @Override
     public Optional<User> findById(Long id) {
-        return Optional.ofNullable(users.get(id));
+        return Optional.ofNullable(users.get(id)).map(InMemoryUserStorage::copyOf);
     }
 
     @Override
     public boolean existsById(Long id) {
         return users.containsKey(id);
     }
+
+    @Override
+    public void addFriend(long userId, long friendId) {
+        requireUsers(userId, friendId);
+        friendIndex.add(userId, friendId);
+    }
+
+    @Override
+    public void removeFriend(long userId, long friendId) {
+        requireUsers(userId, friendId);
+        friendIndex.remove(userId, friendId);
+    }
+
+    @Override
+    public List<User> getFriends(long userId) {
+        return findByIds(friendIndex.getFriends(userId));
+    }
+
+    @Override
+    public List<User> getCommonFriends(long userId, long otherId) {
+        return findByIds(friendIndex.getCommonFriends(userId, otherId));
+    }
+
+    private List<User> findByIds(long[] ids) {
+        return Arrays.stream(ids)
+                .mapToObj(users::get)
+                .filter(Objects::nonNull)
+                .map(InMemoryUserStorage::copyOf)
+                .toList();
+    }
+
+    private void requireUsers(long... userIds) {
+        for (long userId : userIds) {
+            if (!users.containsKey(userId)) {
+                throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+            }
+        }
+    }
+
+    private static User copyOf(User source) {
+        User user = new User();
+        user.setId(source.getId());
+        user.setEmail(source.getEmail());
+        user.setLogin(source.getLogin());
+        user.setName(source.getName());
+        user.setBirthday(source.getBirthday());
+        return user;
+    }
 }
@@ -1,25 +1,72 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
-import org.springframework.context.annotation.Primary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.dao.mapper.UserMapper;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.StripedLocks;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
+@Slf4j
 @Repository
-@Primary
+@Profile("!in-memory")
 @RequiredArgsConstructor
+@Timed(value = "filmorate.storage", histogram = true, percentiles = {0.5, 0.95, 0.99})
 public class UserDbStorage implements UserStorage {
+    // Максимальное число id пользователей в одном IN-списке
+    private static final int IN_LIST_BATCH_SIZE = 1000;
+
     private final JdbcTemplate jdbcTemplate;
     private final UserMapper userMapper;
+    private final FriendIndex friendIndex = new FriendIndex();
+    // Друзья одного пользователя меняются в базе и в индексе под его блокировкой, чтобы добавление
+    // и удаление одной дружбы попали в индекс в том же порядке, что и в базу
+    private final StripedLocks friendLocks = new StripedLocks();
+
+    @PostConstruct
+    public void initFriendIndex() {
+        String sql = "SELECT user_id, friend_id FROM friends ORDER BY user_id, friend_id";
+
+        friendIndex.clear();
+        // Строки отсортированы по user_id, поэтому массив друзей каждого пользователя собирается целиком
+        jdbcTemplate.query(sql, rs -> {
+            long currentUserId = 0;
+            long[] friendIds = new long[16];
+            int size = 0;
+            while (rs.next()) {
+                long userId = rs.getLong("user_id");
+                if (userId != currentUserId && size > 0) {
+                    friendIndex.put(currentUserId, Arrays.copyOf(friendIds, size));
+                    size = 0;
+                }
+                currentUserId = userId;
+                if (size == friendIds.length) {
+                    friendIds = Arrays.copyOf(friendIds, size * 2);
+                }
+                friendIds[size++] = rs.getLong("friend_id");
+            }
+            if (size > 0) {
+                friendIndex.put(currentUserId, Arrays.copyOf(friendIds, size));
+            }
+            return null;
+        });
+        log.info("Индекс друзей построен");
+    }
 
     @Override
     public User create(User user) {
@@ -60,6 +107,12 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sql, userMapper);
     }
 
+    @Override
+    public List<User> findPage(long afterId, int limit) {
+        String sql = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+        return jdbcTemplate.query(sql, userMapper, afterId, limit);
+    }
+
     @Override
     public Optional<User> findById(Long id) {
         String sql = "SELECT * FROM users WHERE id = ?";
@@ -74,16 +127,45 @@ public class UserDbStorage implements UserStorage {
         return count != null && count > 0;
     }
 
+    @Override
     public void addFriend(long userId, long friendId) {
-        String sql = "INSERT INTO friends (user_id, friend_id) VALUES (?, ?)";
-        jdbcTemplate.update(sql, userId, friendId);
+        // Вставка проходит только если оба пользователя существуют, а связи ещё нет
+        String sql = "INSERT INTO friends (user_id, friend_id) "
+                + "SELECT u.id, f.id FROM users u JOIN users f ON f.id = ? "
+                + "WHERE u.id = ? "
+                + "AND NOT EXISTS (SELECT 1 FROM friends fr WHERE fr.user_id = u.id AND fr.friend_id = f.id)";
+        friendLocks.run(() -> {
+            if (jdbcTemplate.update(sql, friendId, userId) == 0) {
+                requireUsers(userId, friendId);
+                return;
+            }
+            friendIndex.add(userId, friendId);
+        }, userId);
     }
 
+    @Override
     public void removeFriend(long userId, long friendId) {
         String sql = "DELETE FROM friends WHERE user_id = ? AND friend_id = ?";
-        jdbcTemplate.update(sql, userId, friendId);
+        friendLocks.run(() -> {
+            if (jdbcTemplate.update(sql, userId, friendId) == 0) {
+                requireUsers(userId, friendId);
+                return;
+            }
+            friendIndex.remove(userId, friendId);
+        }, userId);
     }
 
+    // Вызывается только когда изменение дружбы не затронуло ни одной строки,
+    // чтобы отличить отсутствующего пользователя от повторного запроса
+    private void requireUsers(long... userIds) {
+        for (long userId : userIds) {
+            if (!existsById(userId)) {
+                throw new NotFoundException("Пользователь с ID " + userId + " не найден");
+            }
+        }
+    }
+
+    @Override
     public List<User> getFriends(long userId) {
         String sql = "SELECT u.* FROM users u "
                 + "JOIN friends f ON u.id = f.friend_id "
@@ -92,12 +174,22 @@ public class UserDbStorage implements UserStorage {
         return jdbcTemplate.query(sql, userMapper, userId);
     }
 
+    // Общие друзья вычисляются пересечением в памяти, из базы читаются только найденные пользователи
+    @Override
     public List<User> getCommonFriends(long userId, long otherId) {
-        String sql = "SELECT u.* FROM users u "
-                + "JOIN friends f1 ON u.id = f1.friend_id "
-                + "JOIN friends f2 ON u.id = f2.friend_id "
-                + "WHERE f1.user_id = ? AND f2.user_id = ? "
-                + "ORDER BY u.id";
-        return jdbcTemplate.query(sql, userMapper, userId, otherId);
+        return findByIds(friendIndex.getCommonFriends(userId, otherId));
+    }
+
+    private List<User> findByIds(long[] sortedIds) {
+        List<User> users = new ArrayList<>(sortedIds.length);
+        for (int from = 0; from < sortedIds.length; from += IN_LIST_BATCH_SIZE) {
+            Object[] batch = Arrays.stream(sortedIds, from, Math.min(from + IN_LIST_BATCH_SIZE, sortedIds.length))
+                    .boxed()
+                    .toArray();
+            String sql = "SELECT * FROM users WHERE id IN ("
+                    + String.join(", ", Collections.nCopies(batch.length, "?")) + ") ORDER BY id";
+            users.addAll(jdbcTemplate.query(sql, userMapper, batch));
+        }
+        return users;
     }
 }
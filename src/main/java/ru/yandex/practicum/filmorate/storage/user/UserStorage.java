@@ -11,7 +11,20 @@ public interface UserStorage {
 
     List<User> findAll();
 
+    // Страница пользователей с id больше afterId, упорядоченная по id
+    List<User> findPage(long afterId, int limit);
+
     Optional<User> findById(Long id);
 
     boolean existsById(Long id);
+
+    // Добавляет одностороннюю дружбу; повторный вызов ничего не меняет.
+    // Если пользователь не существует, выбрасывается NotFoundException
+    void addFriend(long userId, long friendId);
+
+    void removeFriend(long userId, long friendId);
+
+    List<User> getFriends(long userId);
+
+    List<User> getCommonFriends(long userId, long otherId);
 }
@@ -20,9 +20,13 @@ CREATE TABLE IF NOT EXISTS films (
     description VARCHAR(200),
     release_date DATE,
     duration INTEGER,
-    mpa_id INTEGER REFERENCES mpa(id)
+    mpa_id INTEGER REFERENCES mpa(id),
+    likes_count INTEGER DEFAULT 0 NOT NULL
 );
 
+-- Денормализованный счётчик лайков (миграция для баз, созданных до его появления)
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count INTEGER DEFAULT 0 NOT NULL;
+
 -- Таблица жанров
 CREATE TABLE IF NOT EXISTS genres (
     id INTEGER PRIMARY KEY,
@@ -49,3 +53,25 @@ CREATE TABLE IF NOT EXISTS friends (
     friend_id INTEGER REFERENCES users(id) ON DELETE CASCADE,
     PRIMARY KEY (user_id, friend_id)
 );
+
+-- Однократные миграции данных: выполненная миграция записывается сюда и больше не запускается
+CREATE TABLE IF NOT EXISTS schema_migrations (
+    name VARCHAR(100) PRIMARY KEY
+);
+
+-- Пересчёт счётчика лайков по таблице likes для баз, созданных до его появления.
+-- После записи миграции условие на id даёт пустой диапазон первичного ключа, поэтому
+-- при следующих запусках ни films, ни likes не читаются
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.id)
+WHERE f.id <= (SELECT CASE WHEN COUNT(*) > 0 THEN 0 ELSE 2147483647 END
+               FROM schema_migrations WHERE name = 'films_likes_count_backfill');
+MERGE INTO schema_migrations KEY (name) VALUES ('films_likes_count_backfill');
+
+-- Популярные фильмы выбираются из рейтинга в памяти, а индекс по счётчику только
+-- перестраивался на каждом лайке
+DROP INDEX IF EXISTS idx_films_likes_count;
+
+-- Фильтры популярных фильмов по жанру и году обслуживаются рейтингами в памяти, запросов
+-- к film_genres по genre_id и к films по году нет, поэтому индексы под них не нужны
+DROP INDEX IF EXISTS idx_film_genres_genre;
+DROP INDEX IF EXISTS idx_films_release_date_likes;
@@ -0,0 +1,121 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Нагрузочный тест: тысячи одновременных клиентов ставят лайки и читают популярные фильмы.
+// Все запросы должны завершиться успешно, несмотря на то что пул соединений намного меньше числа клиентов.
+// Трассировка SQL и HTTP отключена, чтобы тест нагружал приложение, а не вывод логов.
+// Тест медленный, поэтому исключён из обычного mvn test и запускается профилем: mvn -Pload test.
+// Данные пишутся в отдельную H2 в памяти, а не в файловую базу разработчика
+@Slf4j
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"spring.threads.virtual.enabled=true",
+                "spring.datasource.url=jdbc:h2:mem:load-test;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "logging.level.org.springframework.jdbc.core=INFO",
+                "logging.level.org.zalando.logbook=INFO"})
+class VirtualThreadsLoadTest {
+    private static final int CLIENTS = 2000;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Test
+    void testThousandsOfConcurrentClients() throws Exception {
+        Film film = createFilm();
+        List<Long> userIds = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            userIds.add(createUser("load" + System.nanoTime() + "_" + i));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<int[]>> futures = new ArrayList<>(CLIENTS);
+        long startedAt;
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient httpClient = HttpClient.newBuilder()
+                     .executor(clients)
+                     .connectTimeout(Duration.ofSeconds(30))
+                     .build()) {
+            for (long userId : userIds) {
+                futures.add(clients.submit(() -> {
+                    start.await();
+                    HttpResponse<Void> like = httpClient.send(HttpRequest.newBuilder(
+                                    uri("/films/" + film.getId() + "/like/" + userId))
+                            .PUT(HttpRequest.BodyPublishers.noBody())
+                            .build(), HttpResponse.BodyHandlers.discarding());
+                    HttpResponse<Void> popular = httpClient.send(HttpRequest.newBuilder(
+                                    uri("/films/popular?count=10"))
+                            .GET()
+                            .build(), HttpResponse.BodyHandlers.discarding());
+                    return new int[]{like.statusCode(), popular.statusCode()};
+                }));
+            }
+
+            startedAt = System.nanoTime();
+            start.countDown();
+            for (Future<int[]> future : futures) {
+                assertThat(future.get()).containsExactly(200, 200);
+            }
+        }
+
+        double seconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+        log.info("Выполнено {} запросов от {} клиентов за {} с ({} запросов/с)",
+                CLIENTS * 2, CLIENTS, String.format("%.2f", seconds), String.format("%.0f", CLIENTS * 2 / seconds));
+        assertThat(filmStorage.findById(film.getId()).orElseThrow().getLikesCount()).isEqualTo(CLIENTS);
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private Film createFilm() {
+        Film film = new Film();
+        film.setName("Premiere");
+        film.setDescription("Load test film");
+        film.setReleaseDate(LocalDate.of(2024, 1, 1));
+        film.setDuration(120);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return filmStorage.create(film);
+    }
+
+    private long createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        return userStorage.create(user).getId();
+    }
+}
@@ -6,13 +6,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
 
 import java.time.LocalDate;
+import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
@@ -105,4 +108,211 @@ class FilmControllerTest {
                 .content(objectMapper.writeValueAsString(film)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void createFilm_WithGenres_ShouldReturnGenresWithNames() throws Exception {
+        String film = objectMapper.writeValueAsString(createValidFilm())
+                .replace("\"genres\":[]", "\"genres\":[{\"id\":2},{\"id\":1},{\"id\":2,\"name\":\"Драма\"}]");
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/films")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(film))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.genres.length()").value(2))
+                .andExpect(jsonPath("$.genres[0].id").value(1))
+                .andExpect(jsonPath("$.genres[0].name").value("Комедия"))
+                .andExpect(jsonPath("$.genres[1].id").value(2))
+                .andExpect(jsonPath("$.genres[1].name").value("Драма"));
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/films")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(film.replace("{\"id\":1}", "{\"id\":999}")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void createFilm_WithMalformedGenreId_ShouldReturnBadRequest() throws Exception {
+        String film = objectMapper.writeValueAsString(createValidFilm());
+
+        for (String genres : List.of("[{\"id\":\"comedy\"}]", "[{\"id\":null}]", "[{\"name\":\"Драма\"}]",
+                "[{\"id\":1.5}]", "[{\"id\":{}}]")) {
+            mockMvc.perform(MockMvcRequestBuilders.post("/films")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(film.replace("\"genres\":[]", "\"genres\":" + genres)))
+                    .andExpect(status().isBadRequest());
+        }
+    }
+
+    private long createFilmAndGetId() throws Exception {
+        String response = mockMvc.perform(MockMvcRequestBuilders.post("/films")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(createValidFilm())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(response, Film.class).getId();
+    }
+
+    @Test
+    void getAllFilms_WithLimit_ShouldReturnPageAndNextCursor() throws Exception {
+        long firstId = createFilmAndGetId();
+        long secondId = createFilmAndGetId();
+        long thirdId = createFilmAndGetId();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/films")
+                .param("after", String.valueOf(firstId))
+                .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(secondId))
+                .andExpect(header().string("X-Next-Cursor", String.valueOf(secondId)));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/films")
+                .param("after", String.valueOf(secondId))
+                .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(thirdId))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void getAllFilms_WithInvalidLimit_ShouldThrowException() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/films")
+                .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getFilmLikes_ShouldReturnPageOfUserIds() throws Exception {
+        long filmId = createFilmAndGetId();
+        long[] userIds = new long[3];
+        for (int i = 0; i < userIds.length; i++) {
+            String response = mockMvc.perform(MockMvcRequestBuilders.post("/users")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"email\":\"liker" + i + "@example.com\",\"login\":\"liker" + i
+                            + "\",\"birthday\":\"1990-01-01\"}"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            userIds[i] = objectMapper.readTree(response).get("id").asLong();
+            mockMvc.perform(MockMvcRequestBuilders.put("/films/" + filmId + "/like/" + userIds[i]))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/" + filmId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.likesCount").value(3))
+                .andExpect(jsonPath("$.likedUserIds").doesNotExist());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/" + filmId + "/likes")
+                .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0]").value(userIds[0]))
+                .andExpect(header().string("X-Next-Cursor", String.valueOf(userIds[1])));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/" + filmId + "/likes")
+                .param("after", String.valueOf(userIds[1]))
+                .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0]").value(userIds[2]))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+    }
+
+    @Test
+    void getFilmLikes_WithUnknownFilmOrInvalidLimit_ShouldFail() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/999999/likes"))
+                .andExpect(status().isNotFound());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/" + createFilmAndGetId() + "/likes")
+                .param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchFilms_ShouldFindByTitleAndDescription() throws Exception {
+        Film film = createValidFilm();
+        film.setName("Сталкер");
+        film.setDescription("Экспедиция в Зону за исполнением желаний");
+        mockMvc.perform(MockMvcRequestBuilders.post("/films")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(film)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/search")
+                .param("query", "стал"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Сталкер"));
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/search")
+                .param("query", "экспедиц")
+                .param("by", "title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/search")
+                .param("query", "экспедиц")
+                .param("by", "title,description"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Сталкер"));
+    }
+
+    @Test
+    void searchFilms_WithBlankQueryOrUnknownField_ShouldThrowException() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/search"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/films/search")
+                .param("query", "фильм")
+                .param("by", "director"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportFilms_ShouldStreamNdjson() throws Exception {
+        long filmId = createFilmAndGetId();
+
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders.get("/films/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        Film lastFilm = objectMapper.readValue(lines[lines.length - 1], Film.class);
+        assertThat(lastFilm.getId()).isEqualTo(filmId);
+        assertThat(lastFilm.getMpa().getName()).isEqualTo("G");
+    }
+
+    @Test
+    void createFilms_WithValidBatch_ShouldReturnGeneratedIds() throws Exception {
+        Film first = createValidFilm();
+        Film second = createValidFilm();
+        second.setName("Second Film");
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/films/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(first, second))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").exists())
+                .andExpect(jsonPath("$[1].name").value("Second Film"));
+    }
+
+    @Test
+    void createFilms_WithInvalidFilm_ShouldRejectWholeBatch() throws Exception {
+        Film valid = createValidFilm();
+        valid.setName("Batch Film That Must Not Be Saved");
+        Film invalid = createValidFilm();
+        invalid.setDuration(0);
+
+        mockMvc.perform(MockMvcRequestBuilders.post("/films/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(List.of(valid, invalid))))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/films"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.name == 'Batch Film That Must Not Be Saved')]").isEmpty());
+    }
 }
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void prometheusEndpoint_ShouldExposeLayerTimersAndCounters() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/films?limit=10"))
+                .andExpect(status().isOk());
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/1"));
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("filmorate_service_seconds_count")))
+                .andExpect(content().string(containsString("method=\"getFilmsPage\"")))
+                .andExpect(content().string(containsString("filmorate_storage_seconds_bucket")))
+                .andExpect(content().string(containsString("filmorate_storage_seconds{class=\"ru.yandex.practicum.filmorate.storage.film.FilmDbStorage\"")))
+                .andExpect(content().string(containsString("filmorate_jdbc_rows_mapped_total")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"users\"")));
+    }
+}
@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.monitoring.QueryCountFilter;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Бюджет SQL-запросов для эндпоинтов с постраничной выдачей или ограниченным размером ответа.
+// Рост значения X-Query-Count означает новый N+1 и должен ронять сборку.
+// База своя, в памяти: число запросов не должно зависеть от данных, оставшихся от других тестов
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:query-budget;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000")
+@AutoConfigureMockMvc
+class QueryBudgetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    @Value("${filmorate.query-budget.max-statements}")
+    private int maxStatements;
+
+    private long filmId;
+    private long userId;
+    private long otherId;
+
+    @BeforeEach
+    void setUp() {
+        userId = createUser("budget_user");
+        otherId = createUser("budget_other");
+        long friendId = createUser("budget_friend");
+        userStorage.addFriend(userId, friendId);
+        userStorage.addFriend(otherId, friendId);
+
+        for (int i = 0; i < 5; i++) {
+            filmId = createFilm("Budget Film " + i);
+            filmStorage.addLike(filmId, userId);
+        }
+    }
+
+    @Test
+    void filmEndpoints_ShouldStayWithinQueryBudget() throws Exception {
+        assertQueries(get("/films?limit=2"), 2);
+        assertQueries(get("/films/popular?count=10"), 2);
+        assertQueries(get("/films/popular?count=10&genreId=2&year=2000"), 2);
+        assertQueries(get("/films/" + filmId), 1);
+        assertQueries(get("/films/search?query=budget&by=title,description"), 2);
+        assertQueries(get("/films/" + filmId + "/likes"), 1);
+        assertQueries(put("/films/" + filmId + "/like/" + otherId), 2);
+    }
+
+    @Test
+    void userEndpoints_ShouldStayWithinQueryBudget() throws Exception {
+        assertQueries(get("/users?limit=2"), 1);
+        assertQueries(get("/users/" + userId), 1);
+        assertQueries(get("/users/" + userId + "/friends"), 1);
+        assertQueries(get("/users/" + userId + "/friends/common/" + otherId), 1);
+        assertQueries(get("/users/" + userId + "/recommendations"), 2);
+    }
+
+    private void assertQueries(MockHttpServletRequestBuilder request, int budget) throws Exception {
+        MvcResult result = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn();
+
+        String header = result.getResponse().getHeader(QueryCountFilter.QUERY_COUNT_HEADER);
+        assertThat(header).as("заголовок %s", QueryCountFilter.QUERY_COUNT_HEADER).isNotNull();
+        assertThat(Integer.parseInt(header))
+                .as("SQL-запросов для %s", result.getRequest().getRequestURI())
+                .isLessThanOrEqualTo(budget)
+                .isLessThanOrEqualTo(maxStatements);
+        assertThat(result.getResponse().getHeader(QueryCountFilter.QUERY_TIME_HEADER)).isNotNull();
+    }
+
+    private long createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        film.getGenres().add(2);
+        return filmStorage.create(film).getId();
+    }
+
+    private long createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        return userStorage.create(user).getId();
+    }
+}
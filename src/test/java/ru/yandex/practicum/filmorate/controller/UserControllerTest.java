@@ -111,4 +111,38 @@ class UserControllerTest {
                 .content(objectMapper.writeValueAsString(user)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void addFriend_WithUnknownFriend_ShouldReturnNotFound() throws Exception {
+        String response = mockMvc.perform(MockMvcRequestBuilders.post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(createValidUser())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long userId = objectMapper.readValue(response, User.class).getId();
+
+        mockMvc.perform(MockMvcRequestBuilders.put("/users/{id}/friends/{friendId}", userId, Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(MockMvcRequestBuilders.delete("/users/{id}/friends/{friendId}", Long.MAX_VALUE, userId))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getRecommendations_ShouldValidateUserAndCount() throws Exception {
+        String response = mockMvc.perform(MockMvcRequestBuilders.post("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(createValidUser())))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        long userId = objectMapper.readValue(response, User.class).getId();
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}/recommendations", userId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}/recommendations", userId)
+                .param("count", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(MockMvcRequestBuilders.get("/users/{id}/recommendations", Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+    }
 }
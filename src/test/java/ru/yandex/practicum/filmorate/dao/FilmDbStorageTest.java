@@ -0,0 +1,433 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.GenreSet;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.service.LikeWriteBehindQueue;
+import ru.yandex.practicum.filmorate.storage.film.CachingFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.LikeChange;
+import ru.yandex.practicum.filmorate.storage.film.SearchField;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Тесты не оборачиваются в транзакцию: структуры в памяти обновляются только после фиксации,
+// поэтому каждая операция хранилища фиксируется сама, а данные удаляются после теста
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@ComponentScan(basePackages = {"ru.yandex.practicum.filmorate.dao",
+                               "ru.yandex.practicum.filmorate.storage.film"})
+class FilmDbStorageTest {
+    private final FilmStorage filmStorage;
+    private final CachingFilmStorage cachingFilmStorage;
+    private final FilmDbStorage filmDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private Film testFilm;
+
+    @BeforeEach
+    void setUp() {
+        // Рейтинг, матрица лайков и поисковый индекс живут в памяти и не очищаются вместе с таблицами
+        // после предыдущего теста
+        filmDbStorage.init();
+        testFilm = createFilm("Test Film", 1, 1, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM likes");
+        jdbcTemplate.update("DELETE FROM film_genres");
+        jdbcTemplate.update("DELETE FROM films");
+        jdbcTemplate.update("DELETE FROM users");
+    }
+
+    private Film createFilm(String name, int mpaId, int... genreIds) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description of " + name);
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(120);
+
+        Mpa mpa = new Mpa();
+        mpa.setId(mpaId);
+        film.setMpa(mpa);
+
+        film.setGenres(GenreSet.of(genreIds));
+        return film;
+    }
+
+    private long createUser(String login) {
+        jdbcTemplate.update("INSERT INTO users (email, login, name) VALUES (?, ?, ?)",
+                login + "@example.com", login, login);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+    }
+
+    @Test
+    void testFindFilmById() {
+        Film createdFilm = filmStorage.create(testFilm);
+
+        Optional<Film> foundFilm = filmStorage.findById(createdFilm.getId());
+
+        assertThat(foundFilm).isPresent();
+        assertThat(foundFilm.get().getMpa().getName()).isEqualTo("G");
+        assertThat(foundFilm.get().getGenres().ids()).containsExactly(1, 2);
+    }
+
+    @Test
+    void testFindAllFilmsLoadsAdditionalData() {
+        Film first = filmStorage.create(testFilm);
+        Film second = filmStorage.create(createFilm("Another Film", 4, 6));
+        long userId = createUser("liker");
+        jdbcTemplate.update("INSERT INTO likes (film_id, user_id) VALUES (?, ?)", second.getId(), userId);
+
+        List<Film> films = filmStorage.findAll();
+
+        assertThat(films).extracting(Film::getId).containsExactly(first.getId(), second.getId());
+        assertThat(films.get(0).getMpa().getName()).isEqualTo("G");
+        assertThat(films.get(0).getGenres().ids()).containsExactly(1, 2);
+        assertThat(filmStorage.getLikes(first.getId(), 0, 10)).isEmpty();
+        assertThat(films.get(1).getMpa().getName()).isEqualTo("R");
+        assertThat(films.get(1).getGenres().ids()).containsExactly(6);
+        assertThat(filmStorage.getLikes(second.getId(), 0, 10)).containsExactly(userId);
+    }
+
+    @Test
+    void testGetPopularFilmsOrderedByLikes() {
+        Film unpopular = filmStorage.create(testFilm);
+        Film popular = filmStorage.create(createFilm("Popular Film", 2));
+        Film liked = filmStorage.create(createFilm("Liked Film", 3));
+        long firstUser = createUser("first");
+        long secondUser = createUser("second");
+
+        filmStorage.addLike(popular.getId(), firstUser);
+        filmStorage.addLike(popular.getId(), secondUser);
+        filmStorage.addLike(liked.getId(), firstUser);
+        filmStorage.addLike(unpopular.getId(), secondUser);
+        filmStorage.removeLike(unpopular.getId(), secondUser);
+
+        List<Film> films = filmStorage.getPopularFilms(2);
+
+        assertThat(films).extracting(Film::getId).containsExactly(popular.getId(), liked.getId());
+        assertThat(filmStorage.getLikes(popular.getId(), 0, 10)).containsExactly(firstUser, secondUser);
+        assertThat(films.get(0).getLikesCount()).isEqualTo(2);
+        assertThat(filmStorage.findById(unpopular.getId()).orElseThrow().getLikesCount()).isZero();
+    }
+
+    @Test
+    void testGetLikesPagesByUserId() {
+        Film film = filmStorage.create(testFilm);
+        long firstUser = createUser("first");
+        long secondUser = createUser("second");
+        long thirdUser = createUser("third");
+        filmStorage.addLike(film.getId(), thirdUser);
+        filmStorage.addLike(film.getId(), firstUser);
+        filmStorage.addLike(film.getId(), secondUser);
+
+        assertThat(filmStorage.getLikes(film.getId(), 0, 2)).containsExactly(firstUser, secondUser);
+        assertThat(filmStorage.getLikes(film.getId(), secondUser, 2)).containsExactly(thirdUser);
+        assertThat(filmStorage.getLikes(film.getId(), thirdUser, 2)).isEmpty();
+    }
+
+    @Test
+    void testRecommendationsComeFromUsersWithOverlappingLikes() {
+        Film first = filmStorage.create(testFilm);
+        Film second = filmStorage.create(createFilm("Second", 1));
+        Film sharedByTwin = filmStorage.create(createFilm("Twin's Pick", 1));
+        Film sharedByOther = filmStorage.create(createFilm("Other's Pick", 1));
+        long me = createUser("me");
+        long twin = createUser("twin");
+        long other = createUser("other");
+        long newcomer = createUser("newcomer");
+
+        filmStorage.addLike(first.getId(), me);
+        filmStorage.addLike(second.getId(), me);
+        filmStorage.addLike(first.getId(), twin);
+        filmStorage.addLike(second.getId(), twin);
+        filmStorage.addLike(sharedByTwin.getId(), twin);
+        filmStorage.addLike(first.getId(), other);
+        filmStorage.addLike(sharedByOther.getId(), other);
+
+        assertThat(filmStorage.getRecommendations(me, 10)).extracting(Film::getId)
+                .containsExactly(sharedByTwin.getId(), sharedByOther.getId());
+        assertThat(filmStorage.getRecommendations(me, 1)).extracting(Film::getId)
+                .containsExactly(sharedByTwin.getId());
+        assertThat(filmStorage.getRecommendations(newcomer, 10)).isEmpty();
+
+        filmStorage.removeLike(sharedByTwin.getId(), twin);
+        filmStorage.applyLikeChanges(List.of(new LikeChange(sharedByOther.getId(), me, true)));
+
+        assertThat(filmStorage.getRecommendations(me, 10)).isEmpty();
+
+        filmDbStorage.init();
+        assertThat(filmStorage.getRecommendations(twin, 10)).extracting(Film::getId)
+                .containsExactly(sharedByOther.getId());
+    }
+
+    @Test
+    void testRolledBackChangesDoNotReachInMemoryIndexes() {
+        Film first = filmStorage.create(testFilm);
+        Film second = filmStorage.create(createFilm("Second", 1));
+        long me = createUser("me");
+        long other = createUser("other");
+        long third = createUser("third");
+        long fourth = createUser("fourth");
+        filmStorage.addLike(first.getId(), me);
+        filmStorage.addLike(first.getId(), other);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            filmStorage.create(createFilm("Phantom", 1));
+            filmStorage.addLike(second.getId(), other);
+            filmStorage.applyLikeChanges(List.of(new LikeChange(second.getId(), third, true),
+                    new LikeChange(second.getId(), fourth, true)));
+            status.setRollbackOnly();
+        });
+
+        assertThat(filmStorage.getLikes(second.getId(), 0, 10)).isEmpty();
+        assertThat(filmStorage.getRecommendations(me, 10)).isEmpty();
+        assertThat(filmStorage.getPopularFilms(2)).extracting(Film::getId)
+                .containsExactly(first.getId(), second.getId());
+        assertThat(filmStorage.search("phantom", EnumSet.of(SearchField.TITLE), 10)).isEmpty();
+    }
+
+    @Test
+    void testConcurrentLikeAndUnlikeKeepRecommendationsInSyncWithDatabase() throws Exception {
+        Film first = filmStorage.create(testFilm);
+        Film second = filmStorage.create(createFilm("Second", 1));
+        long me = createUser("me");
+        long other = createUser("other");
+        filmStorage.addLike(first.getId(), me);
+        filmStorage.addLike(first.getId(), other);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                boolean liking = t % 2 == 0;
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        if (liking) {
+                            filmStorage.addLike(second.getId(), other);
+                        } else {
+                            filmStorage.removeLike(second.getId(), other);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        boolean likedInDatabase = filmStorage.getLikes(second.getId(), 0, 10).length == 1;
+        assertThat(filmStorage.getRecommendations(me, 10)).extracting(Film::getId)
+                .isEqualTo(likedInDatabase ? List.of(second.getId()) : List.of());
+    }
+
+    @Test
+    void testGetPopularFilmsFilteredByGenreAndYear() {
+        Film comedy2000 = filmStorage.create(createFilm("Comedy 2000", 1, 1));
+        Film drama2000 = filmStorage.create(createFilm("Drama 2000", 1, 2));
+        Film comedy = createFilm("Comedy 2010", 1, 1, 2);
+        comedy.setReleaseDate(LocalDate.of(2010, 5, 1));
+        Film comedy2010 = filmStorage.create(comedy);
+        long firstUser = createUser("first");
+        long secondUser = createUser("second");
+
+        filmStorage.addLike(comedy2010.getId(), firstUser);
+        filmStorage.addLike(comedy2010.getId(), secondUser);
+        filmStorage.addLike(drama2000.getId(), firstUser);
+
+        assertThat(filmStorage.getPopularFilms(10, 1, null)).extracting(Film::getId)
+                .containsExactly(comedy2010.getId(), comedy2000.getId());
+        assertThat(filmStorage.getPopularFilms(10, null, 2000)).extracting(Film::getId)
+                .containsExactly(drama2000.getId(), comedy2000.getId());
+        assertThat(filmStorage.getPopularFilms(10, 2, 2010)).extracting(Film::getId)
+                .containsExactly(comedy2010.getId());
+        assertThat(filmStorage.getPopularFilms(10, 3, null)).isEmpty();
+
+        // После смены жанров и даты фильм переходит в другие рейтинги вместе с лайками
+        comedy2010.setGenres(GenreSet.of(3));
+        comedy2010.setReleaseDate(LocalDate.of(2000, 2, 1));
+        filmStorage.update(comedy2010);
+
+        assertThat(filmStorage.getPopularFilms(10, 1, null)).extracting(Film::getId)
+                .containsExactly(comedy2000.getId());
+        assertThat(filmStorage.getPopularFilms(10, 3, 2000)).extracting(Film::getId)
+                .containsExactly(comedy2010.getId());
+        assertThat(filmStorage.getPopularFilms(10, null, 2000)).extracting(Film::getId)
+                .containsExactly(comedy2010.getId(), drama2000.getId(), comedy2000.getId());
+
+        filmDbStorage.init();
+        assertThat(filmStorage.getPopularFilms(10, 3, 2000)).extracting(Film::getLikesCount)
+                .containsExactly(2L);
+    }
+
+    @Test
+    void testSearchByWordPrefixesRankedByPopularity() {
+        Film hedgehog = createFilm("Ёжик в тумане", 1);
+        hedgehog.setDescription("Мультфильм про ёжика и медвежонка");
+        hedgehog = filmStorage.create(hedgehog);
+        Film fog = filmStorage.create(createFilm("Туманность Андромеды", 1));
+        Film other = createFilm("Солярис", 1);
+        other.setDescription("Фильм о планете в тумане");
+        other = filmStorage.create(other);
+        long userId = createUser("searcher");
+        filmStorage.addLike(fog.getId(), userId);
+
+        Set<SearchField> title = EnumSet.of(SearchField.TITLE);
+        Set<SearchField> both = EnumSet.allOf(SearchField.class);
+        assertThat(filmStorage.search("ТУМАН", title, 10)).extracting(Film::getId)
+                .containsExactly(fog.getId(), hedgehog.getId());
+        assertThat(filmStorage.search("ежик туман", title, 10)).extracting(Film::getId)
+                .containsExactly(hedgehog.getId());
+        assertThat(filmStorage.search("туман", both, 10)).extracting(Film::getId)
+                .containsExactly(fog.getId(), hedgehog.getId(), other.getId());
+        assertThat(filmStorage.search("туман", both, 1)).extracting(Film::getId)
+                .containsExactly(fog.getId());
+        assertThat(filmStorage.search("медвеж", title, 10)).isEmpty();
+
+        other.setName("Туман над Солярисом");
+        filmStorage.update(other);
+        assertThat(filmStorage.search("солярис", title, 10)).extracting(Film::getId)
+                .containsExactly(other.getId());
+
+        filmDbStorage.init();
+        assertThat(filmStorage.search("андромеды", title, 10)).extracting(Film::getId)
+                .containsExactly(fog.getId());
+    }
+
+    @Test
+    void testCreateAllFilms() {
+        List<Film> created = filmStorage.createAll(List.of(testFilm, createFilm("Second Film", 2, 3)));
+
+        assertThat(created).extracting(Film::getId).allMatch(id -> id > 0).doesNotHaveDuplicates();
+        assertThat(filmStorage.findById(created.get(1).getId()))
+                .hasValueSatisfying(film -> {
+                    assertThat(film.getName()).isEqualTo("Second Film");
+                    assertThat(film.getGenres().ids()).containsExactly(3);
+                });
+        assertThat(filmStorage.search("film", EnumSet.of(SearchField.TITLE), 10)).extracting(Film::getId)
+                .containsExactlyInAnyOrderElementsOf(created.stream().map(Film::getId).toList());
+        assertThat(filmStorage.search("second", EnumSet.of(SearchField.TITLE), 10)).extracting(Film::getId)
+                .containsExactly(created.get(1).getId());
+    }
+
+    @Test
+    void testUpdateFilmGenres() {
+        Film createdFilm = filmStorage.create(testFilm);
+
+        Film changed = createFilm("Test Film", 1, 2, 3);
+        changed.setId(createdFilm.getId());
+        filmStorage.update(changed);
+        assertThat(filmStorage.findById(createdFilm.getId()).orElseThrow().getGenres().ids())
+                .containsExactly(2, 3);
+
+        filmStorage.update(changed);
+        assertThat(filmStorage.findById(createdFilm.getId()).orElseThrow().getGenres().ids())
+                .containsExactly(2, 3);
+
+        Film withoutGenres = createFilm("Test Film", 1);
+        withoutGenres.setId(createdFilm.getId());
+        filmStorage.update(withoutGenres);
+        assertThat(filmStorage.findById(createdFilm.getId()).orElseThrow().getGenres().isEmpty()).isTrue();
+    }
+
+    @Test
+    void testAddLikeIsIdempotentAndChecksExistence() {
+        Film film = filmStorage.create(testFilm);
+        long userId = createUser("liker");
+
+        filmStorage.addLike(film.getId(), userId);
+        filmStorage.addLike(film.getId(), userId);
+
+        assertThat(filmStorage.findById(film.getId()).orElseThrow().getLikesCount()).isEqualTo(1);
+        assertThatThrownBy(() -> filmStorage.addLike(film.getId(), userId + 1000))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> filmStorage.removeLike(film.getId() + 1000, userId))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void testFindByIdIsCachedAndInvalidatedByLike() {
+        Film film = filmStorage.create(testFilm);
+        long userId = createUser("liker");
+        long hits = cachingFilmStorage.stats().hitCount();
+
+        filmStorage.findById(film.getId()).orElseThrow().setName("Changed by caller");
+        jdbcTemplate.update("UPDATE films SET name = ? WHERE id = ?", "Changed in database", film.getId());
+
+        assertThat(filmStorage.findById(film.getId()).orElseThrow().getName()).isEqualTo("Test Film");
+        assertThat(cachingFilmStorage.stats().hitCount()).isEqualTo(hits + 1);
+
+        filmStorage.addLike(film.getId(), userId);
+
+        Film reloaded = filmStorage.findById(film.getId()).orElseThrow();
+        assertThat(reloaded.getName()).isEqualTo("Changed in database");
+        assertThat(reloaded.getLikesCount()).isEqualTo(1);
+        assertThat(filmStorage.getLikes(film.getId(), 0, 10)).containsExactly(userId);
+        assertThat(reloaded.getGenres().ids()).containsExactly(1, 2);
+    }
+
+    @Test
+    void testWriteBehindQueueCoalescesAndRejectsWhenFull() {
+        Film film = filmStorage.create(testFilm);
+        long firstUser = createUser("first");
+        long secondUser = createUser("second");
+        LikeWriteBehindQueue queue = new LikeWriteBehindQueue(filmStorage, 3, 10);
+
+        queue.enqueue(film.getId(), firstUser, true);
+        queue.enqueue(film.getId(), secondUser, true);
+        queue.enqueue(film.getId(), firstUser, false);
+        queue.enqueue(film.getId(), secondUser + 1000, true);
+        queue.enqueue(film.getId(), firstUser, true);
+
+        assertThat(queue.size()).isEqualTo(3);
+        assertThat(filmStorage.findById(film.getId()).orElseThrow().getLikesCount()).isZero();
+        assertThatThrownBy(() -> queue.enqueue(film.getId(), secondUser + 2000, true))
+                .isInstanceOf(ServiceUnavailableException.class);
+
+        queue.flush();
+
+        assertThat(queue.size()).isZero();
+        assertThat(filmStorage.getLikes(film.getId(), 0, 10)).containsExactly(firstUser, secondUser);
+        assertThat(filmStorage.findById(film.getId()).orElseThrow().getLikesCount()).isEqualTo(2);
+        assertThat(filmStorage.getPopularFilms(1)).extracting(Film::getId).containsExactly(film.getId());
+
+        queue.enqueue(film.getId(), firstUser, false);
+        queue.drain();
+
+        assertThat(queue.size()).isZero();
+        assertThat(filmStorage.findById(film.getId()).orElseThrow().getLikesCount()).isEqualTo(1);
+    }
+}
@@ -7,12 +7,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.storage.user.CachingUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -22,7 +30,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 @ComponentScan(basePackages = {"ru.yandex.practicum.filmorate.dao.mapper",
                                "ru.yandex.practicum.filmorate.storage.user"})
 class UserDbStorageTest {
-    private final UserStorage userStorage;
+    private final UserDbStorage userStorage;
+    private final CachingUserStorage cachingUserStorage;
+    private final JdbcTemplate jdbcTemplate;
     private User testUser;
 
     @BeforeEach
@@ -87,4 +97,126 @@ class UserDbStorageTest {
 
         assertThat(users).hasSize(2);
     }
+
+    @Test
+    void testFindUsersPage() {
+        User first = userStorage.create(testUser);
+
+        User anotherUser = new User();
+        anotherUser.setEmail("another@example.com");
+        anotherUser.setLogin("anotherLogin");
+        anotherUser.setName("Another User");
+        anotherUser.setBirthday(LocalDate.of(1995, 5, 5));
+        User second = userStorage.create(anotherUser);
+
+        assertThat(userStorage.findPage(0, 1)).extracting(User::getId).containsExactly(first.getId());
+        assertThat(userStorage.findPage(first.getId(), 10)).extracting(User::getId).containsExactly(second.getId());
+        assertThat(userStorage.findPage(second.getId(), 10)).isEmpty();
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.create(user);
+    }
+
+    @Test
+    void testGetCommonFriends() {
+        User user = createUser("user");
+        User other = createUser("other");
+        User common = createUser("common");
+        User onlyUserFriend = createUser("onlyUserFriend");
+
+        userStorage.addFriend(user.getId(), common.getId());
+        userStorage.addFriend(user.getId(), onlyUserFriend.getId());
+        userStorage.addFriend(other.getId(), common.getId());
+
+        assertThat(userStorage.getCommonFriends(user.getId(), other.getId()))
+                .extracting(User::getId).containsExactly(common.getId());
+
+        userStorage.removeFriend(other.getId(), common.getId());
+
+        assertThat(userStorage.getCommonFriends(user.getId(), other.getId())).isEmpty();
+    }
+
+    // Вне тестовой транзакции: параллельные потоки должны видеть созданных пользователей
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void testConcurrentAddAndRemoveFriendKeepIndexInSyncWithDatabase() throws Exception {
+        User user = createUser("user");
+        User other = createUser("other");
+        User common = createUser("common");
+        userStorage.addFriend(user.getId(), common.getId());
+        try {
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    boolean adding = t % 2 == 0;
+                    tasks.add(executor.submit(() -> {
+                        for (int i = 0; i < 100; i++) {
+                            if (adding) {
+                                userStorage.addFriend(other.getId(), common.getId());
+                            } else {
+                                userStorage.removeFriend(other.getId(), common.getId());
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            boolean friendsInDatabase = userStorage.getFriends(other.getId()).size() == 1;
+            assertThat(userStorage.getCommonFriends(user.getId(), other.getId())).extracting(User::getId)
+                    .isEqualTo(friendsInDatabase ? List.of(common.getId()) : List.of());
+        } finally {
+            jdbcTemplate.update("DELETE FROM friends");
+            jdbcTemplate.update("DELETE FROM users");
+            userStorage.initFriendIndex();
+        }
+    }
+
+    @Test
+    void testFriendIndexIsBuiltFromDatabase() {
+        User user = createUser("user");
+        User other = createUser("other");
+        User first = createUser("first");
+        User second = createUser("second");
+        for (User friend : List.of(first, second)) {
+            jdbcTemplate.update("INSERT INTO friends (user_id, friend_id) VALUES (?, ?)", user.getId(), friend.getId());
+            jdbcTemplate.update("INSERT INTO friends (user_id, friend_id) VALUES (?, ?)", other.getId(), friend.getId());
+        }
+
+        userStorage.initFriendIndex();
+
+        assertThat(userStorage.getCommonFriends(user.getId(), other.getId()))
+                .extracting(User::getId).containsExactly(first.getId(), second.getId());
+    }
+
+    @Test
+    void testUserCacheRemembersMissingIdsAndInvalidatesOnUpdate() {
+        long missingId = 999_999L;
+        long missingHits = cachingUserStorage.missingStats().hitCount();
+
+        assertThat(cachingUserStorage.existsById(missingId)).isFalse();
+        assertThat(cachingUserStorage.findById(missingId)).isEmpty();
+        assertThat(cachingUserStorage.missingStats().hitCount()).isEqualTo(missingHits + 1);
+
+        User created = cachingUserStorage.create(testUser);
+        assertThat(cachingUserStorage.findById(created.getId())).isPresent();
+
+        jdbcTemplate.update("UPDATE users SET name = ? WHERE id = ?", "Changed in database", created.getId());
+        assertThat(cachingUserStorage.findById(created.getId()).orElseThrow().getName()).isEqualTo("Test User");
+
+        created.setName("Updated Name");
+        cachingUserStorage.update(created);
+        assertThat(cachingUserStorage.findById(created.getId()).orElseThrow().getName()).isEqualTo("Updated Name");
+    }
 }
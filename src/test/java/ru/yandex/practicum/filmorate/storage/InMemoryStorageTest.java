@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("in-memory")
+class InMemoryStorageTest {
+    private static final int THREADS = 8;
+    private static final int USERS_PER_THREAD = 50;
+
+    @Autowired
+    private FilmStorage filmStorage;
+
+    @Autowired
+    private UserStorage userStorage;
+
+    private Film createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        Mpa mpa = new Mpa();
+        mpa.setId(1);
+        film.setMpa(mpa);
+        return filmStorage.create(film);
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@example.com");
+        user.setLogin(login);
+        user.setName(login);
+        return userStorage.create(user);
+    }
+
+    @Test
+    void testInMemoryProfileSelectsInMemoryStorages() {
+        assertThat(filmStorage).isInstanceOf(InMemoryFilmStorage.class);
+        assertThat(userStorage).isInstanceOf(InMemoryUserStorage.class);
+    }
+
+    @Test
+    void testConcurrentLikesAndFriends() throws Exception {
+        Film film = createFilm("Concurrent Film");
+        Film otherFilm = createFilm("Other Film");
+        User first = createUser("first");
+        User second = createUser("second");
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < USERS_PER_THREAD; i++) {
+                    User user = createUser("user" + Thread.currentThread().threadId() + "_" + i);
+                    filmStorage.addLike(film.getId(), user.getId());
+                    filmStorage.addLike(film.getId(), user.getId());
+                    userStorage.addFriend(first.getId(), user.getId());
+                    userStorage.addFriend(second.getId(), user.getId());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        Film loaded = filmStorage.findById(film.getId()).orElseThrow();
+        assertThat(loaded.getLikesCount()).isEqualTo(THREADS * USERS_PER_THREAD);
+        assertThat(filmStorage.getLikes(film.getId(), 0, Integer.MAX_VALUE))
+                .hasSize(THREADS * USERS_PER_THREAD)
+                .isSorted();
+        assertThat(loaded.getMpa().getName()).isEqualTo("G");
+        assertThat(filmStorage.getPopularFilms(2)).extracting(Film::getId)
+                .containsExactly(film.getId(), otherFilm.getId());
+        assertThat(userStorage.getCommonFriends(first.getId(), second.getId()))
+                .hasSize(THREADS * USERS_PER_THREAD)
+                .extracting(User::getId)
+                .isSorted()
+                .doesNotHaveDuplicates();
+    }
+}